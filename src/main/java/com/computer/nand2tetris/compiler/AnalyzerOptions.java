@@ -0,0 +1,206 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+
+// Command line of JackAnalyzer: any number of .jack files and directories (each one compiled as
+// a separate root with its own class-name context), @argfile manifests listing further
+// arguments one per line, and --flags.
+final class AnalyzerOptions {
+
+  private static final String ARGFILE_PREFIX = "@";
+  private static final String FLAG_PREFIX = "--";
+  private static final int DEFAULT_PIPELINE_DEPTH = 16;
+  private static final int DEFAULT_PARALLEL_LEXING_CHUNK_LINES = 16384;
+  private static final String MAIN_SUBROUTINE = "Main.main";
+
+  private final ImmutableList.Builder<String> inputLocations = ImmutableList.builder();
+  private final ImmutableList.Builder<String> includeGlobs = ImmutableList.builder();
+  private boolean pipeline = false;
+  private int pipelineDepth = DEFAULT_PIPELINE_DEPTH;
+  private boolean asyncOutput = false;
+  private boolean compressOutput = false;
+  private boolean check = false;
+  private Optional<String> indexFile = Optional.absent();
+  private boolean wholeProgram = false;
+  private final ImmutableList.Builder<String> roots = ImmutableList.builder();
+  private Optional<Integer> parallelLexingChunkLines = Optional.absent();
+  private Optional<Integer> maxOpenFiles = Optional.absent();
+  private Optional<String> costHistoryFile = Optional.absent();
+  private Optional<Integer> maxResidentTokens = Optional.absent();
+
+  private AnalyzerOptions() {}
+
+  static AnalyzerOptions parse(String[] args) {
+    AnalyzerOptions options = new AnalyzerOptions();
+    for (String arg : expandArgFiles(ImmutableList.copyOf(args))) {
+      if (arg.startsWith(FLAG_PREFIX)) {
+        options.parseFlag(arg);
+      } else {
+        options.inputLocations.add(arg);
+      }
+    }
+    Preconditions.checkArgument(
+        !options.inputLocations().isEmpty(), "Expected at least one .jack file or directory.");
+    return options;
+  }
+
+  private void parseFlag(String flag) {
+    int separatorIndex = flag.indexOf('=');
+    String name = separatorIndex < 0 ? flag : flag.substring(0, separatorIndex);
+    String value = separatorIndex < 0 ? null : flag.substring(separatorIndex + 1);
+    switch (name) {
+      case "--include":
+        includeGlobs.add(requireValue(name, value));
+        break;
+      case "--pipeline":
+        pipeline = true;
+        break;
+      case "--pipeline-depth":
+        pipelineDepth = requirePositiveInt(name, value);
+        break;
+      case "--async-output":
+        asyncOutput = true;
+        break;
+      case "--compress-output":
+        compressOutput = true;
+        break;
+      case "--check":
+        check = true;
+        break;
+      case "--index":
+        indexFile = Optional.of(requireValue(name, value));
+        break;
+      case "--whole-program":
+        wholeProgram = true;
+        break;
+      case "--roots":
+        for (String root : requireValue(name, value).split(",")) {
+          Preconditions.checkArgument(
+              root.indexOf('.') > 0, "%s expects Class.subroutine names.", name);
+          roots.add(root.trim());
+        }
+        break;
+      case "--parallel-lexing":
+        parallelLexingChunkLines = Optional.of(value == null
+            ? DEFAULT_PARALLEL_LEXING_CHUNK_LINES : requirePositiveInt(name, value));
+        break;
+      case "--max-open-files":
+        maxOpenFiles = Optional.of(requirePositiveInt(name, value));
+        break;
+      case "--max-resident-tokens":
+        maxResidentTokens = Optional.of(requirePositiveInt(name, value));
+        break;
+      case "--cost-history":
+        costHistoryFile = Optional.of(requireValue(name, value));
+        break;
+      default:
+        throw new IllegalArgumentException("Unknown option " + flag);
+    }
+  }
+
+  private static String requireValue(String name, String value) {
+    Preconditions.checkArgument(value != null && !value.isEmpty(), "%s expects a value.", name);
+    return value;
+  }
+
+  private static int requirePositiveInt(String name, String value) {
+    int number = Integer.parseInt(requireValue(name, value));
+    Preconditions.checkArgument(number > 0, "%s expects a positive number.", name);
+    return number;
+  }
+
+  private static ImmutableList<String> expandArgFiles(ImmutableList<String> args) {
+    ImmutableList.Builder<String> expanded = ImmutableList.builder();
+    for (String arg : args) {
+      if (arg.startsWith(ARGFILE_PREFIX)) {
+        expanded.addAll(expandArgFiles(readArgFile(arg.substring(ARGFILE_PREFIX.length()))));
+      } else {
+        expanded.add(arg);
+      }
+    }
+    return expanded.build();
+  }
+
+  // Blank lines and lines starting with '#' are ignored.
+  private static ImmutableList<String> readArgFile(String path) {
+    try {
+      return Files.readLines(new File(path), Charsets.UTF_8)
+          .stream()
+          .map(String::trim)
+          .filter(l -> !l.isEmpty() && !l.startsWith("#"))
+          .collect(ImmutableList.toImmutableList());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  ImmutableList<String> inputLocations() {
+    return inputLocations.build();
+  }
+
+  ImmutableList<String> includeGlobs() {
+    return includeGlobs.build();
+  }
+
+  boolean pipeline() {
+    return pipeline;
+  }
+
+  int pipelineDepth() {
+    return pipelineDepth;
+  }
+
+  boolean asyncOutput() {
+    return asyncOutput;
+  }
+
+  boolean compressOutput() {
+    return compressOutput;
+  }
+
+  // Only checks the syntax: nothing is written and no directories are created.
+  boolean check() {
+    return check;
+  }
+
+  // Only the subroutines reachable from the roots are output.
+  boolean wholeProgram() {
+    return wholeProgram;
+  }
+
+  // Main.main followed by the --roots.
+  ImmutableList<String> roots() {
+    return ImmutableList.<String>builder().add(MAIN_SUBROUTINE).addAll(roots.build()).build();
+  }
+
+  // Files longer than this many lines are tokenized in chunks of this size in parallel.
+  Optional<Integer> parallelLexingChunkLines() {
+    return parallelLexingChunkLines;
+  }
+
+  // The most files the compiling threads hold open at once.
+  Optional<Integer> maxOpenFiles() {
+    return maxOpenFiles;
+  }
+
+  // The most tokens the compiling threads hold in memory at once.
+  Optional<Integer> maxResidentTokens() {
+    return maxResidentTokens;
+  }
+
+  // The file of the compile times of the previous runs, to compile the longest files first.
+  Optional<String> costHistoryFile() {
+    return costHistoryFile;
+  }
+
+  // The project index file to update with the compiled files.
+  Optional<String> indexFile() {
+    return indexFile;
+  }
+}
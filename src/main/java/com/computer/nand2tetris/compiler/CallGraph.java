@@ -0,0 +1,42 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+
+// The calls between the subroutines of a program, named "Class.subroutine", as recorded by
+// IndexingVisitor.
+final class CallGraph {
+
+  private final ImmutableSetMultimap<String, String> calleesByCaller;
+
+  private CallGraph(ImmutableSetMultimap<String, String> calleesByCaller) {
+    this.calleesByCaller = calleesByCaller;
+  }
+
+  static CallGraph of(Iterable<IndexEntry> entries) {
+    ImmutableSetMultimap.Builder<String, String> calleesByCaller = ImmutableSetMultimap.builder();
+    for (IndexEntry entry : entries) {
+      if (entry.kind() == IndexEntry.Kind.CALL) {
+        calleesByCaller.put(entry.container(), entry.className() + "." + entry.name());
+      }
+    }
+    return new CallGraph(calleesByCaller.build());
+  }
+
+  ImmutableSet<String> reachableFrom(Iterable<String> roots) {
+    Set<String> reachable = new HashSet<>();
+    Deque<String> pending = new ArrayDeque<>();
+    roots.forEach(pending::add);
+    while (!pending.isEmpty()) {
+      String subroutine = pending.poll();
+      if (reachable.add(subroutine)) {
+        pending.addAll(calleesByCaller.get(subroutine));
+      }
+    }
+    return ImmutableSet.copyOf(reachable);
+  }
+}
@@ -0,0 +1,41 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.computer.nand2tetris.compiler.tokenizer.JackTokenizer;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.util.Iterator;
+
+// Collects the class name of a file without parsing. Only the tokens up to the class header
+// are read.
+final class ClassHeaderScanner {
+
+  private final JackTokenizer tokenizer;
+
+  ClassHeaderScanner(JackTokenizer tokenizer) {
+    this.tokenizer = tokenizer;
+  }
+
+  ImmutableList<String> scanFirstClassName(BufferedReader reader) {
+    Iterator<TokenBuffer> lines = tokenizer.lineTokenStream(reader).iterator();
+    boolean afterClassKeyword = false;
+    while (lines.hasNext()) {
+      TokenBuffer tokens = lines.next();
+      for (int i = 0; i < tokens.size(); i++) {
+        if (afterClassKeyword) {
+          afterClassKeyword = false;
+          if (tokens.tokenType(i).equals(TokenType.IDENTIFIER)) {
+            return ImmutableList.of(tokens.text(i));
+          }
+        } else if (isClassKeyword(tokens, i)) {
+          afterClassKeyword = true;
+        }
+      }
+    }
+    return ImmutableList.of();
+  }
+
+  private static boolean isClassKeyword(TokenBuffer tokens, int index) {
+    return tokens.tokenType(index).equals(TokenType.KEYWORD) && tokens.textEquals(index, "class");
+  }
+}
@@ -0,0 +1,278 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.io.IOPaths;
+import com.computer.nand2tetris.compiler.io.OutputFileWriter;
+import com.computer.nand2tetris.compiler.io.OutputWriterFactory;
+import com.computer.nand2tetris.compiler.io.ParsedXmlWriter;
+import com.computer.nand2tetris.compiler.io.TokensWriter;
+import com.computer.nand2tetris.compiler.parser.JackParser;
+import com.computer.nand2tetris.compiler.tokenizer.JackTokenizer;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+// Compiles files in four stages (read, tokenize, parse, write), each running on its own thread
+// and connected to the next one by a bounded queue. While one file is being parsed, the next
+// one is tokenized and the previous one is written out. A full queue blocks the stage feeding
+// it, which bounds the number of files held in memory.
+final class CompilationPipeline implements AutoCloseable {
+
+  private static final int STAGE_COUNT = 4;
+  private static final Item END_OF_INPUT = new Item(null, null);
+
+  private final JackTokenizer tokenizer;
+  private final Supplier<JackParser> parserFactory;
+  private final TokensWriter tokensWriter;
+  private final OutputWriterFactory outputWriterFactory;
+  private final Optional<ProjectIndexCollector> index;
+  private final ResourceBudget budget;
+  private final Optional<CompileCostHistory> costHistory;
+  private final BlockingQueue<Item> readQueue;
+  // Platform threads: the parse stage needs the deep stack of the workers.
+  private final ExecutorService stages = Executors.newFixedThreadPool(
+      STAGE_COUNT,
+      r -> new Thread(null, r, "jack-stage", JackAnalyzer.WORKER_STACK_SIZE));
+  // Set when a stage dies. The items submitted afterwards fail right away.
+  private volatile Throwable failure;
+
+  CompilationPipeline(
+      JackTokenizer tokenizer,
+      Supplier<JackParser> parserFactory,
+      TokensWriter tokensWriter,
+      OutputWriterFactory outputWriterFactory,
+      Optional<ProjectIndexCollector> index,
+      ResourceBudget budget,
+      Optional<CompileCostHistory> costHistory,
+      int queueCapacity) {
+    this.tokenizer = tokenizer;
+    this.parserFactory = parserFactory;
+    this.tokensWriter = tokensWriter;
+    this.outputWriterFactory = outputWriterFactory;
+    this.index = index;
+    this.budget = budget;
+    this.costHistory = costHistory;
+
+    readQueue = new ArrayBlockingQueue<>(queueCapacity);
+    BlockingQueue<Item> tokenizeQueue = new ArrayBlockingQueue<>(queueCapacity);
+    BlockingQueue<Item> parseQueue = new ArrayBlockingQueue<>(queueCapacity);
+    BlockingQueue<Item> writeQueue = new ArrayBlockingQueue<>(queueCapacity);
+    startStage(readQueue, Optional.of(tokenizeQueue), this::read);
+    startStage(tokenizeQueue, Optional.of(parseQueue), this::tokenize);
+    startStage(parseQueue, Optional.of(writeQueue), this::parse);
+    startStage(writeQueue, Optional.absent(), this::write);
+  }
+
+  // Blocks while the read queue is full.
+  CompletableFuture<Void> submit(IOPaths ioPaths, Context context) {
+    Item item = new Item(ioPaths, context);
+    if (failure != null) {
+      item.done.completeExceptionally(failure);
+      return item.done;
+    }
+    put(readQueue, item);
+    return item.done;
+  }
+
+  @Override
+  public void close() {
+    put(readQueue, END_OF_INPUT);
+    stages.shutdown();
+    try {
+      stages.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private void startStage(
+      BlockingQueue<Item> input, Optional<BlockingQueue<Item>> output, Stage stage) {
+    stages.execute(() -> {
+      try {
+        runStage(input, output, stage);
+      } catch (Throwable t) {
+        failure = t;
+        drain(input, output, t);
+      }
+    });
+  }
+
+  // Any failure while handling an item, including errors such as a stack overflow, only fails
+  // that item. The cost of a file is the time its stages took, without the time it spent in the
+  // queues.
+  private void runStage(
+      BlockingQueue<Item> input, Optional<BlockingQueue<Item>> output, Stage stage) {
+    while (true) {
+      Item item = take(input);
+      if (item == END_OF_INPUT) {
+        if (output.isPresent()) {
+          put(output.get(), END_OF_INPUT);
+        }
+        return;
+      }
+      try {
+        long start = System.nanoTime();
+        stage.run(item);
+        item.nanos += System.nanoTime() - start;
+        if (output.isPresent()) {
+          put(output.get(), item);
+        } else {
+          recordCost(item);
+          item.done.complete(null);
+        }
+      } catch (Throwable t) {
+        item.done.completeExceptionally(t);
+      }
+    }
+  }
+
+  // Takes the place of a dead stage: fails the items that reach it, and still passes the end of
+  // the input on so that the following stages finish.
+  private static void drain(
+      BlockingQueue<Item> input, Optional<BlockingQueue<Item>> output, Throwable failure) {
+    while (true) {
+      Item item = Uninterruptibles.takeUninterruptibly(input);
+      if (item == END_OF_INPUT) {
+        if (output.isPresent()) {
+          Uninterruptibles.putUninterruptibly(output.get(), END_OF_INPUT);
+        }
+        return;
+      }
+      item.done.completeExceptionally(failure);
+    }
+  }
+
+  // The tokens of the file are held until its outputs are written or it fails, whichever stage
+  // that happens in.
+  private void read(Item item) throws IOException {
+    ResourceBudget.Permit tokensPermit = acquire(
+        item, () -> budget.acquireResidentTokens(JackAnalyzer.inputLength(item.ioPaths)));
+    item.done.whenComplete((v, t) -> tokensPermit.release());
+    ResourceBudget.Permit filePermit = acquire(item, () -> budget.acquireOpenFiles(1));
+    try {
+      item.source = new String(
+          Files.readAllBytes(Paths.get(item.ioPaths.inputFilePath())), Charset.defaultCharset());
+    } finally {
+      filePermit.release();
+    }
+  }
+
+  private void tokenize(Item item) {
+    item.tokens = tokenizer.tokenizeToBuffer(new BufferedReader(new StringReader(item.source)));
+    item.source = null;
+  }
+
+  private void parse(Item item) throws IOException {
+    StringWriter tokensOutput = new StringWriter();
+    StringWriter parserOutput = new StringWriter();
+    Optional<IndexingVisitor> indexingVisitor = index.isPresent()
+        ? Optional.of(index.get().visitorFor(item.ioPaths.inputFilePath(), item.tokens))
+        : Optional.absent();
+    try (BufferedWriter tokensOutputWriter = new BufferedWriter(tokensOutput)) {
+      tokensWriter.writeTokens(item.tokens, tokensOutputWriter);
+    }
+    try (BufferedWriter parserOutputWriter = new BufferedWriter(parserOutput)) {
+      JackElementVisitor outputs = UnreachableSubroutineFilter.wrap(
+          item.context,
+          new ParsedXmlWriter(parserOutputWriter, JackParser.NON_TERMINALS_TO_PARSE));
+      parserFactory.get().parse(
+          item.tokens,
+          Optional.of(item.context),
+          MulticastVisitor.of(
+              Iterables.concat(ImmutableList.of(outputs), indexingVisitor.asSet())));
+    }
+    if (indexingVisitor.isPresent()) {
+      index.get().add(indexingVisitor.get());
+    }
+    item.tokensXml = tokensOutput.toString();
+    item.parserXml = parserOutput.toString();
+    item.tokens = null;
+  }
+
+  private void write(Item item) throws IOException {
+    writeFile(item, item.ioPaths.tokenizerOutputPath(), item.tokensXml);
+    writeFile(item, item.ioPaths.parserOutputPath(), item.parserXml);
+  }
+
+  private void writeFile(Item item, String path, String content) throws IOException {
+    ResourceBudget.Permit filesPermit =
+        acquire(item, () -> budget.acquireOpenFiles(JackAnalyzer.FILES_PER_OUTPUT));
+    try (OutputFileWriter writer = outputWriterFactory.createWriter(path)) {
+      writer.write(content);
+      writer.commit();
+    } finally {
+      filesPermit.release();
+    }
+  }
+
+  // The time spent waiting for the budget is not part of the cost of the file.
+  private static ResourceBudget.Permit acquire(
+      Item item, Supplier<ResourceBudget.Permit> acquisition) {
+    long start = System.nanoTime();
+    ResourceBudget.Permit permit = acquisition.get();
+    item.nanos -= System.nanoTime() - start;
+    return permit;
+  }
+
+  private void recordCost(Item item) {
+    if (costHistory.isPresent()) {
+      costHistory.get().record(item.ioPaths.inputFilePath(), item.nanos);
+    }
+  }
+
+  private static Item take(BlockingQueue<Item> queue) {
+    try {
+      return queue.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static void put(BlockingQueue<Item> queue, Item item) {
+    try {
+      queue.put(item);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+  }
+
+  private interface Stage {
+    void run(Item item) throws IOException;
+  }
+
+  // The state of one file as it moves through the stages. Each stage drops what the following
+  // stages no longer need.
+  private static final class Item {
+    final IOPaths ioPaths;
+    final Context context;
+    final CompletableFuture<Void> done = new CompletableFuture<>();
+    String source;
+    TokenBuffer tokens;
+    String tokensXml;
+    String parserXml;
+    long nanos;
+
+    Item(IOPaths ioPaths, Context context) {
+      this.ioPaths = ioPaths;
+      this.context = context;
+    }
+  }
+}
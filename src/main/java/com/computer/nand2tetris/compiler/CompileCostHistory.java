@@ -0,0 +1,132 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.io.IOPaths;
+import com.computer.nand2tetris.compiler.io.TemporaryFiles;
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// The time it took to compile every file in the previous runs, keyed by the path and the size of
+// the file, so that the files expected to take longest are started first and a large file
+// doesn't end up alone at the end of the run. A file without history (new, or changed in size)
+// is estimated from its size, at the average time per byte of the history.
+//
+// The file has one "size<TAB>nanoseconds<TAB>path" line per source file.
+final class CompileCostHistory {
+
+  private static final String SEPARATOR = "\t";
+
+  private final Path historyFile;
+  private final Map<String, Cost> costs;
+
+  private CompileCostHistory(Path historyFile, Map<String, Cost> costs) {
+    this.historyFile = historyFile;
+    this.costs = costs;
+  }
+
+  static CompileCostHistory loadOrEmpty(Path historyFile) {
+    Map<String, Cost> costs = new ConcurrentHashMap<>();
+    if (Files.exists(historyFile)) {
+      try {
+        for (String line : Files.readAllLines(historyFile, Charsets.UTF_8)) {
+          String[] fields = line.split(SEPARATOR, 3);
+          if (fields.length == 3) {
+            costs.put(fields[2], new Cost(Long.parseLong(fields[0]), Long.parseLong(fields[1])));
+          }
+        }
+      } catch (IOException | NumberFormatException e) {
+        // A damaged history only costs the ordering of one run; it is rewritten at the end.
+        costs.clear();
+      }
+    }
+    return new CompileCostHistory(historyFile, costs);
+  }
+
+  // The files ordered by decreasing expected compile time.
+  ImmutableList<IOPaths> longestFirst(ImmutableList<IOPaths> ioPaths) {
+    double nanosPerByte = nanosPerByte();
+    Map<String, Double> estimates = new HashMap<>();
+    ioPaths.forEach(p -> estimates.put(
+        p.inputFilePath(), estimateNanos(p.inputFilePath(), nanosPerByte)));
+    return ImmutableList.sortedCopyOf(
+        Comparator.comparing((IOPaths p) -> estimates.get(p.inputFilePath())).reversed(),
+        ioPaths);
+  }
+
+  void record(String path, long nanos) {
+    costs.put(key(path), new Cost(new File(path).length(), nanos));
+  }
+
+  // Entries of files that no longer exist are dropped.
+  void write() {
+    try {
+      Path temporaryFile = TemporaryFiles.createNextTo(historyFile);
+      boolean moved = false;
+      try {
+        try (BufferedWriter writer = Files.newBufferedWriter(temporaryFile, Charsets.UTF_8)) {
+          for (Map.Entry<String, Cost> entry : costs.entrySet()) {
+            if (new File(entry.getKey()).exists()) {
+              Cost cost = entry.getValue();
+              writer.write(cost.size + SEPARATOR + cost.nanos + SEPARATOR + entry.getKey());
+              writer.newLine();
+            }
+          }
+        }
+        Files.move(
+            temporaryFile,
+            historyFile,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        moved = true;
+      } finally {
+        if (!moved) {
+          Files.deleteIfExists(temporaryFile);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private double estimateNanos(String path, double nanosPerByte) {
+    long size = new File(path).length();
+    Cost cost = costs.get(key(path));
+    return cost != null && cost.size == size ? cost.nanos : size * nanosPerByte;
+  }
+
+  // The same file is found whatever the working directory of the run.
+  private static String key(String path) {
+    return Paths.get(path).toAbsolutePath().normalize().toString();
+  }
+
+  // Without history, sizes alone give the order.
+  private double nanosPerByte() {
+    long totalSize = 0;
+    long totalNanos = 0;
+    for (Cost cost : costs.values()) {
+      totalSize += cost.size;
+      totalNanos += cost.nanos;
+    }
+    return totalSize > 0 && totalNanos > 0 ? (double) totalNanos / totalSize : 1;
+  }
+
+  private static final class Cost {
+    final long size;
+    final long nanos;
+
+    Cost(long size, long nanos) {
+      this.size = size;
+      this.nanos = nanos;
+    }
+  }
+}
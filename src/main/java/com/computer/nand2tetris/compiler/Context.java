@@ -1,48 +1,63 @@
 package com.computer.nand2tetris.compiler;
 
-import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.computer.nand2tetris.compiler.symbols.IdentifierInterner;
 import com.google.common.base.Optional;
-import java.util.Set;
-import java.util.TreeSet;
+import com.google.common.collect.ImmutableSet;
+
+// Immutable snapshot of the class names collected in the first pass. Safe to share across
+// compile threads.
+public final class Context {
+
+  private final ImmutableSet<String> classNames;
+  // Only read after construction. Lets identifier tokens be looked up by the hash computed by
+  // the tokenizer, without creating their text.
+  private final IdentifierInterner classNameIds = new IdentifierInterner();
+  // In whole program mode, the "Class.subroutine" names of the reachable subroutines.
+  private final Optional<ImmutableSet<String>> reachableSubroutines;
+
+  private Context(
+      ImmutableSet<String> classNames, Optional<ImmutableSet<String>> reachableSubroutines) {
+    this.classNames = classNames;
+    this.reachableSubroutines = reachableSubroutines;
+    classNames.forEach(classNameIds::intern);
+  }
+
+  static Context of(Iterable<String> classNames) {
+    return new Context(ImmutableSet.copyOf(classNames), Optional.absent());
+  }
 
-public class Context implements JackElementVisitor {
+  Context withReachableSubroutines(ImmutableSet<String> reachableSubroutines) {
+    return new Context(classNames, Optional.of(reachableSubroutines));
+  }
 
-  private Set<String> classNames = new TreeSet<>();
+  public boolean isClassNameToken(JackToken token) {
+    return isClassName(token.tokenText());
+  }
 
-  boolean inClassNonTerminal = false;
-  Optional<String> currentClassName = Optional.absent();
+  public boolean isClassName(String name) {
+    return classNames.contains(name);
+  }
 
-  @Override
-  public void beginNonTerminalVisit(String nonTerminalText) {
-    if (nonTerminalText.equals("class")) {
-      inClassNonTerminal = true;
-    }
+  // The token at the index must be an identifier.
+  public boolean isClassName(TokenBuffer tokens, int index) {
+    return classNameIds.lookup(tokens, index) != IdentifierInterner.NO_ID;
   }
 
-  @Override
-  public void endNonTerminalVisit(String nonTerminalText) {
-    if (inClassNonTerminal && nonTerminalText.equals("class")) {
-      inClassNonTerminal = false;
-      currentClassName = Optional.absent();
-    }
+  public Optional<ImmutableSet<String>> reachableSubroutines() {
+    return reachableSubroutines;
   }
 
-  @Override
-  public void visitTerminal(JackToken token) {
-    if (token.tokenType().equals(TokenType.IDENTIFIER) && !currentClassName.isPresent()) {
-      currentClassName = Optional.of(token.tokenText());
-      classNames.add(currentClassName.get());
-    }
+  // Every subroutine is reachable unless the context is for a whole program.
+  public boolean isReachable(String className, String subroutineName) {
+    return !reachableSubroutines.isPresent()
+        || reachableSubroutines.get().contains(className + "." + subroutineName);
   }
 
-  public boolean isClassNameToken(JackToken token) {
-    return classNames.contains(token.tokenText());
+  public ImmutableSet<String> classNames() {
+    return classNames;
   }
 
   public String toString() {
-    return String.format(
-        "current class name: %s, all class names: %s",
-        currentClassName,
-        classNames);
+    return String.format("all class names: %s", classNames);
   }
 }
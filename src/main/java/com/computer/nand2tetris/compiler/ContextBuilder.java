@@ -0,0 +1,21 @@
+package com.computer.nand2tetris.compiler;
+
+import java.util.HashSet;
+import java.util.Set;
+
+public class ContextBuilder {
+
+  private final Set<String> classNames = new HashSet<>();
+
+  public ContextBuilder(Iterable<String> standardLibraryClassNames) {
+    standardLibraryClassNames.forEach(classNames::add);
+  }
+
+  public synchronized void addClassName(String className) {
+    classNames.add(className);
+  }
+
+  public synchronized Context build() {
+    return Context.of(classNames);
+  }
+}
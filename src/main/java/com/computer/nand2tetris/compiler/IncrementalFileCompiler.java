@@ -0,0 +1,24 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.parser.IncrementalParser;
+import com.computer.nand2tetris.compiler.tokenizer.IncrementalTokenizer;
+import com.google.common.base.Optional;
+import java.util.List;
+
+// Recompiles one file as it is edited, e.g. on every save in an editor. Only the lines from the
+// first changed one to the point where the comment state is back in sync are lexed again, and
+// only the class variable and subroutine declarations whose tokens changed are parsed again, so
+// the work done scales with the size of the edit rather than the size of the file.
+public final class IncrementalFileCompiler {
+
+  private final IncrementalTokenizer tokenizer = new IncrementalTokenizer();
+  private final IncrementalParser parser = new IncrementalParser();
+
+  // The visitor receives the same events as from a full parse of the lines.
+  public TokenBuffer compile(
+      List<String> lines, Optional<Context> context, JackElementVisitor visitor) {
+    TokenBuffer tokens = tokenizer.tokenize(lines);
+    parser.parse(tokens, context, visitor);
+    return tokens;
+  }
+}
@@ -0,0 +1,38 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.auto.value.AutoValue;
+
+// A definition or a call site recorded by IndexingVisitor. For calls, className and name are
+// those of the called subroutine and container is the calling subroutine ("Class.subroutine").
+// tokenIndex is the ordinal of the token naming the definition or the call in its file.
+@AutoValue
+public abstract class IndexEntry {
+
+  public enum Kind {
+    CLASS, STATIC, FIELD, CONSTRUCTOR, FUNCTION, METHOD, CALL
+  }
+
+  public static IndexEntry create(
+      Kind kind,
+      String className,
+      String name,
+      String container,
+      String file,
+      int tokenIndex,
+      int line) {
+    return new AutoValue_IndexEntry(kind, className, name, container, file, tokenIndex, line);
+  }
+
+  public abstract Kind kind();
+  public abstract String className();
+  public abstract String name();
+  public abstract String container();
+  public abstract String file();
+  public abstract int tokenIndex();
+  public abstract int line();
+
+  // Definitions are looked up by their name, calls by the qualified name of the callee.
+  String key() {
+    return kind() == Kind.CALL ? className() + "." + name() : name();
+  }
+}
@@ -0,0 +1,158 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.computer.nand2tetris.compiler.symbols.SymbolTable;
+import com.computer.nand2tetris.compiler.symbols.SymbolTableBuilder;
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayList;
+import java.util.List;
+
+// Records the class, its fields and subroutines, and the subroutine calls of one parsed file
+// for the ProjectIndex. The qualifier of a call through a variable is resolved to the type of
+// the variable, and an unqualified call to the current class.
+public final class IndexingVisitor implements JackElementVisitor {
+
+  private static final ImmutableMap<String, IndexEntry.Kind> MEMBER_KINDS =
+      ImmutableMap.<String, IndexEntry.Kind>builder()
+          .put("static", IndexEntry.Kind.STATIC)
+          .put("field", IndexEntry.Kind.FIELD)
+          .put("constructor", IndexEntry.Kind.CONSTRUCTOR)
+          .put("function", IndexEntry.Kind.FUNCTION)
+          .put("method", IndexEntry.Kind.METHOD)
+          .build();
+
+  private final String file;
+  private final int[] lineNumbers;
+  private final SymbolTableBuilder symbols = new SymbolTableBuilder(new SymbolTable());
+  private final ImmutableList.Builder<IndexEntry> entries = ImmutableList.builder();
+  private int tokenIndex = 0;
+
+  private String className = "";
+  private String subroutineName = "";
+  private Optional<IndexEntry.Kind> memberKind = Optional.absent();
+  private boolean atDeclarationStart = false;
+  private boolean inClassName = false;
+  private boolean inClassVarDec = false;
+  private boolean inVarName = false;
+  private boolean inSubroutineName = false;
+  // The identifiers of a call up to its opening parenthesis.
+  private boolean inCallee = false;
+  private final List<String> calleeIdentifiers = new ArrayList<>();
+  private int calleeTokenIndex;
+
+  public IndexingVisitor(String file, TokenBuffer tokens) {
+    this.file = file;
+    this.lineNumbers = tokens.lineNumbers();
+  }
+
+  public String file() {
+    return file;
+  }
+
+  public ImmutableList<IndexEntry> entries() {
+    return entries.build();
+  }
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {
+    symbols.beginNonTerminalVisit(nonTerminalText);
+    switch (nonTerminalText) {
+      case "class":
+        className = "";
+        break;
+      case "className":
+        inClassName = className.isEmpty();
+        break;
+      case "classVarDec":
+        inClassVarDec = true;
+        atDeclarationStart = true;
+        break;
+      case "subroutineDec":
+        atDeclarationStart = true;
+        break;
+      case "varName":
+        inVarName = inClassVarDec;
+        break;
+      case "subroutineName":
+        inSubroutineName = !inCallee;
+        break;
+      case "subroutineCall":
+        inCallee = true;
+        calleeIdentifiers.clear();
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {
+    symbols.endNonTerminalVisit(nonTerminalText);
+    switch (nonTerminalText) {
+      case "className":
+        inClassName = false;
+        break;
+      case "classVarDec":
+        inClassVarDec = false;
+        break;
+      case "varName":
+        inVarName = false;
+        break;
+      case "subroutineName":
+        inSubroutineName = false;
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void visitTerminal(JackToken token) {
+    symbols.visitTerminal(token);
+    if (atDeclarationStart) {
+      atDeclarationStart = false;
+      memberKind = Optional.fromNullable(MEMBER_KINDS.get(token.tokenText()));
+    } else if (inClassName) {
+      className = token.tokenText();
+      add(IndexEntry.Kind.CLASS, className, "");
+    } else if (inVarName && memberKind.isPresent()) {
+      add(memberKind.get(), token.tokenText(), "");
+    } else if (inSubroutineName && memberKind.isPresent()) {
+      subroutineName = token.tokenText();
+      add(memberKind.get(), subroutineName, "");
+    } else if (inCallee) {
+      visitCalleeToken(token);
+    }
+    tokenIndex++;
+  }
+
+  private void visitCalleeToken(JackToken token) {
+    if (token.tokenType() == TokenType.IDENTIFIER) {
+      if (calleeIdentifiers.isEmpty()) {
+        calleeTokenIndex = tokenIndex;
+      }
+      calleeIdentifiers.add(token.tokenText());
+    } else if (token.tokenText().equals("(")) {
+      inCallee = false;
+      String calleeName = calleeIdentifiers.get(calleeIdentifiers.size() - 1);
+      String calleeClass = calleeIdentifiers.size() == 1
+          ? className
+          : symbols.symbolTable().typeOf(calleeIdentifiers.get(0)).or(calleeIdentifiers.get(0));
+      entries.add(IndexEntry.create(
+          IndexEntry.Kind.CALL,
+          calleeClass,
+          calleeName,
+          className + "." + subroutineName,
+          file,
+          calleeTokenIndex,
+          lineNumbers[calleeTokenIndex]));
+    }
+  }
+
+  private void add(IndexEntry.Kind kind, String name, String container) {
+    entries.add(IndexEntry.create(
+        kind, className, name, container, file, tokenIndex, lineNumbers[tokenIndex]));
+  }
+}
@@ -1,37 +1,73 @@
 package com.computer.nand2tetris.compiler;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
-
+import com.computer.nand2tetris.compiler.io.AsyncOutputWriter;
+import com.computer.nand2tetris.compiler.io.FileOutputWriterFactory;
+import com.computer.nand2tetris.compiler.io.GzipOutputWriterFactory;
 import com.computer.nand2tetris.compiler.io.IOPaths;
 import com.computer.nand2tetris.compiler.io.IOPathsCreator;
+import com.computer.nand2tetris.compiler.io.IOPathsSource;
+import com.computer.nand2tetris.compiler.io.OutputFileWriter;
+import com.computer.nand2tetris.compiler.io.OutputWriterFactory;
 import com.computer.nand2tetris.compiler.io.ParsedXmlWriter;
 import com.computer.nand2tetris.compiler.io.TokensWriter;
 import com.computer.nand2tetris.compiler.parser.JackParser;
 import com.computer.nand2tetris.compiler.tokenizer.JackTokenizer;
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
 import java.io.BufferedReader;
-import java.io.BufferedWriter;
+import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.stream.Stream;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+public final class JackAnalyzer {
 
-final class JackAnalyzer {
+  // Deeply nested sources need a deep stack for the recursive descent parser.
+  static final long WORKER_STACK_SIZE = 256L << 20;
+
+  // An output holds its temporary file open, and the existing file while they are compared.
+  static final int FILES_PER_OUTPUT = 2;
 
   private final JackTokenizer tokenizer;
-  private final JackParser parser;
+  private final Supplier<JackParser> parserFactory;
   private final TokensWriter tokensWriter;
+  private final OutputWriterFactory outputWriterFactory;
+  private final ExecutorService workers;
+  private final Optional<Integer> parallelLexingChunkLines;
+  private final ResourceBudget budget;
+  private final Optional<CompileCostHistory> costHistory;
 
-  JackAnalyzer(JackTokenizer tokenizer, JackParser parser, TokensWriter tokensWriter) {
+  JackAnalyzer(
+      JackTokenizer tokenizer,
+      Supplier<JackParser> parserFactory,
+      TokensWriter tokensWriter,
+      OutputWriterFactory outputWriterFactory,
+      ExecutorService workers,
+      Optional<Integer> parallelLexingChunkLines,
+      ResourceBudget budget,
+      Optional<CompileCostHistory> costHistory) {
     this.tokenizer = tokenizer;
-    this.parser = parser;
+    this.parserFactory = parserFactory;
     this.tokensWriter = tokensWriter;
-  }
-
-  private static Stream<String> getInputPaths(ImmutableList<IOPaths> ioPaths) {
-    return ioPaths.stream().map(IOPaths::inputFilePath);
+    this.outputWriterFactory = outputWriterFactory;
+    this.workers = workers;
+    this.parallelLexingChunkLines = parallelLexingChunkLines;
+    this.budget = budget;
+    this.costHistory = costHistory;
   }
 
   private static BufferedReader createReader(String filePath) {
@@ -42,74 +78,314 @@ final class JackAnalyzer {
     }
   }
 
-  private static BufferedWriter createWriter(String filePath) throws IOException {
-    return new BufferedWriter(new FileWriter(filePath));
+  private OutputFileWriter createWriter(String filePath) throws IOException {
+    return outputWriterFactory.createWriter(filePath);
   }
 
   public static void main(String[] args) throws IOException {
-    ImmutableList<IOPaths> ioPaths = IOPathsCreator.createPaths(args);
-    //System.err.println(ioPaths);
-    JackAnalyzer analyzer =
-        new JackAnalyzer(
-            new JackTokenizer(),
-            new JackParser(),
-            new TokensWriter());
-    analyzer.analyze(ioPaths);
+    AnalyzerOptions options = AnalyzerOptions.parse(args);
+    OutputWriterFactory fileWriterFactory =
+        options.compressOutput() ? new GzipOutputWriterFactory() : new FileOutputWriterFactory();
+    Optional<AsyncOutputWriter> asyncOutputWriter =
+        options.asyncOutput()
+            ? Optional.of(new AsyncOutputWriter(fileWriterFactory))
+            : Optional.absent();
+    ExecutorService workers =
+        Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(),
+            r -> new Thread(null, r, "jack-worker", WORKER_STACK_SIZE));
+    boolean success = true;
+    try {
+      JackAnalyzer analyzer =
+          new JackAnalyzer(
+              new JackTokenizer(),
+              JackParser::new,
+              new TokensWriter(),
+              asyncOutputWriter.isPresent()
+                  ? asyncOutputWriter.get() : fileWriterFactory,
+              workers,
+              options.parallelLexingChunkLines(),
+              ResourceBudget.of(options.maxOpenFiles(), options.maxResidentTokens()),
+              options.costHistoryFile().transform(
+                  f -> CompileCostHistory.loadOrEmpty(Paths.get(f))));
+      if (options.check()) {
+        success = analyzer.check(options);
+      } else {
+        analyzer.analyze(options);
+      }
+    } finally {
+      workers.shutdown();
+      if (asyncOutputWriter.isPresent()) {
+        asyncOutputWriter.get().close();
+      }
+    }
+    if (!success) {
+      System.exit(1);
+    }
   }
 
-  private void analyze(ImmutableList<IOPaths> ioPaths) throws IOException {
-    Context context = buildContext(ioPaths);
-    ioPaths.stream().forEachOrdered(p -> compile(p, context));
+  // Parses every file with a no-op visitor and prints one "path:line: error: message" line per
+  // file that fails, sorted by path. Returns whether all the files parse.
+  private boolean check(AnalyzerOptions options) {
+    Queue<String> diagnostics = new ConcurrentLinkedQueue<>();
+    analyze(
+        options,
+        (p, c) -> CompletableFuture.runAsync(
+            () -> {
+              Optional<String> diagnostic = check(p, c);
+              if (diagnostic.isPresent()) {
+                diagnostics.add(diagnostic.get());
+              }
+            },
+            workers));
+    writeCostHistory();
+    diagnostics.stream().sorted().forEachOrdered(System.err::println);
+    return diagnostics.isEmpty();
   }
 
-  private Context buildContext(ImmutableList<IOPaths> ioPaths) {
-    Context context = new Context();
-    ImmutableList<BufferedReader> inputReaders = createInputReaders(getInputPaths(ioPaths));
-    inputReaders
-        .stream()
-        .map(tokenizer::tokenize)
-        .forEachOrdered(t -> parser.parse(t, Optional.absent(), context));
-    closeInputReaders(inputReaders);
-    return context;
-  }
-
-  private void closeInputReaders(ImmutableList<BufferedReader> readers) {
-    readers.stream().forEachOrdered(r -> {
-      try {
-        r.close();
-      } catch (IOException e) {
-        throw new RuntimeException(e);
+  private Optional<String> check(IOPaths ioPaths, Context context) {
+    ResourceBudget.Permit permit = acquireBudget(ioPaths, 1);
+    try {
+      long start = System.nanoTime();
+      Optional<String> diagnostic = checkTokens(ioPaths, context);
+      recordCost(ioPaths, start);
+      return diagnostic;
+    } finally {
+      permit.release();
+    }
+  }
+
+  private Optional<String> checkTokens(IOPaths ioPaths, Context context) {
+    TokenBuffer tokens;
+    try {
+      tokens = tokenize(ioPaths);
+    } catch (IOException | RuntimeException e) {
+      return Optional.of(diagnostic(ioPaths.inputFilePath(), Optional.absent(), e));
+    }
+
+    TokenBuffer.Cursor cursor = tokens.cursor();
+    try {
+      parserFactory.get().parse(cursor, Optional.of(context), NoOpVisitor.INSTANCE);
+      return Optional.absent();
+    } catch (RuntimeException e) {
+      int index = Math.min(cursor.position(), tokens.size() - 1);
+      return Optional.of(diagnostic(
+          ioPaths.inputFilePath(),
+          index < 0 ? Optional.absent() : Optional.of(tokens.lineNumber(index)),
+          e));
+    }
+  }
+
+  private static String diagnostic(String path, Optional<Integer> line, Exception e) {
+    String location = line.isPresent() ? path + ":" + line.get() : path;
+    String message = String.valueOf(e.getMessage()).replace('\n', ' ');
+    return String.format("%s: error: %s", location, message);
+  }
+
+  private void analyze(AnalyzerOptions options) {
+    Optional<ProjectIndexCollector> index =
+        options.indexFile().transform(f -> new ProjectIndexCollector(Paths.get(f)));
+    if (!options.pipeline()) {
+      analyze(
+          options,
+          (p, c) -> CompletableFuture.runAsync(
+              () -> compile(p, c, index), workers));
+    } else {
+      try (CompilationPipeline pipeline =
+          new CompilationPipeline(
+              tokenizer,
+              parserFactory,
+              tokensWriter,
+              outputWriterFactory,
+              index,
+              budget,
+              costHistory,
+              options.pipelineDepth())) {
+        analyze(options, pipeline::submit);
       }
+    }
+    if (index.isPresent()) {
+      index.get().write();
+    }
+    writeCostHistory();
+  }
+
+  // Records the time the file took since start in the cost history. The start comes after the
+  // budget is acquired, so that the time spent waiting for it is not counted.
+  private void recordCost(IOPaths ioPaths, long start) {
+    if (costHistory.isPresent()) {
+      costHistory.get().record(ioPaths.inputFilePath(), System.nanoTime() - start);
+    }
+  }
+
+  private void writeCostHistory() {
+    if (costHistory.isPresent()) {
+      costHistory.get().write();
+    }
+  }
+
+  // With a cost history, the files expected to take longest are submitted first.
+  private ImmutableList<IOPaths> schedule(ImmutableList<IOPaths> ioPaths) {
+    return costHistory.isPresent() ? costHistory.get().longestFirst(ioPaths) : ioPaths;
+  }
+
+  // Every input location is a separate root with its own class-name context. The discovery of
+  // all the roots starts at once and all of them share the worker pool.
+  private void analyze(
+      AnalyzerOptions options,
+      BiFunction<IOPaths, Context, CompletableFuture<Void>> fileCompiler) {
+    ImmutableList<IOPathsSource> sources = options.inputLocations()
+        .stream()
+        .map(l -> IOPathsCreator.createPaths(
+            ImmutableList.of(l), options.includeGlobs(), !options.check()))
+        .collect(ImmutableList.toImmutableList());
+    List<CompletableFuture<Void>> roots = new ArrayList<>();
+    sources.forEach(s -> roots.add(analyzeRoot(s, options, fileCompiler)));
+    CompletableFuture.allOf(roots.toArray(new CompletableFuture<?>[0])).join();
+  }
+
+  private CompletableFuture<Void> analyzeRoot(
+      IOPathsSource ioPathsSource,
+      AnalyzerOptions options,
+      BiFunction<IOPaths, Context, CompletableFuture<Void>> fileCompiler) {
+    ImmutableList.Builder<IOPaths> ioPaths = ImmutableList.builder();
+    CompletableFuture<Context> context = buildContext(ioPathsSource, ioPaths);
+    if (options.wholeProgram() && !options.check()) {
+      context = context.thenCompose(
+          c -> findReachableSubroutines(schedule(ioPaths.build()), c, options.roots()));
+    }
+    return context.thenCompose(c -> compileAll(schedule(ioPaths.build()), c, fileCompiler));
+  }
+
+  // Parses all the files of the program to build its call graph, and returns the context with
+  // the subroutines reachable from the roots.
+  private CompletableFuture<Context> findReachableSubroutines(
+      ImmutableList<IOPaths> ioPaths, Context context, ImmutableList<String> roots) {
+    List<CompletableFuture<ImmutableList<IndexEntry>>> indexings = ioPaths
+        .stream()
+        .map(p -> CompletableFuture.supplyAsync(() -> index(p, context), workers))
+        .collect(Collectors.toList());
+    return CompletableFuture.allOf(indexings.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> CallGraph.of(
+            indexings.stream()
+                .flatMap(i -> i.join().stream())
+                .collect(ImmutableList.toImmutableList())))
+        .thenApply(g -> context.withReachableSubroutines(g.reachableFrom(roots)));
+  }
+
+  private ImmutableList<IndexEntry> index(IOPaths ioPaths, Context context) {
+    ResourceBudget.Permit permit = acquireBudget(ioPaths, 1);
+    try {
+      TokenBuffer tokens = tokenize(ioPaths);
+      IndexingVisitor indexingVisitor = new IndexingVisitor(ioPaths.inputFilePath(), tokens);
+      parserFactory.get().parse(tokens, Optional.of(context), indexingVisitor);
+      return indexingVisitor.entries();
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } finally {
+      permit.release();
+    }
+  }
+
+  private static CompletableFuture<Void> compileAll(
+      ImmutableList<IOPaths> ioPaths,
+      Context context,
+      BiFunction<IOPaths, Context, CompletableFuture<Void>> fileCompiler) {
+    return CompletableFuture.allOf(
+        ioPaths
+            .stream()
+            .map(p -> fileCompiler.apply(p, context))
+            .toArray(CompletableFuture<?>[]::new));
+  }
+
+  // Scans the class headers of the files as they are discovered and records the discovered
+  // paths for the second pass.
+  private CompletableFuture<Context> buildContext(
+      Iterator<IOPaths> ioPathsSource,
+      ImmutableList.Builder<IOPaths> discoveredPaths) {
+    ContextBuilder contextBuilder = new ContextBuilder(StandardLibraryManifest.load());
+    ClassHeaderScanner scanner = new ClassHeaderScanner(tokenizer);
+    List<CompletableFuture<Void>> scans = new ArrayList<>();
+    ioPathsSource.forEachRemaining(p -> {
+      discoveredPaths.add(p);
+      scans.add(CompletableFuture.runAsync(
+          () -> scanClassNames(scanner, p.inputFilePath()).forEach(contextBuilder::addClassName),
+          workers));
     });
+    return CompletableFuture.allOf(scans.toArray(new CompletableFuture<?>[0]))
+        .thenApply(v -> contextBuilder.build());
   }
 
-  private ImmutableList<BufferedReader> createInputReaders(Stream<String> inputPaths) {
-    return inputPaths.map(JackAnalyzer::createReader).collect(toImmutableList());
+  // A file whose header can't be scanned contributes no class name; compiling it reports the
+  // error.
+  private ImmutableList<String> scanClassNames(ClassHeaderScanner scanner, String path) {
+    ResourceBudget.Permit filePermit = budget.acquireOpenFiles(1);
+    try (BufferedReader reader = createReader(path)) {
+      return scanner.scanFirstClassName(reader);
+    } catch (IOException | RuntimeException e) {
+      return ImmutableList.of();
+    } finally {
+      filePermit.release();
+    }
   }
 
-  private void compile(IOPaths ioPaths, Context context) {
+  // The tokenizer output is written from the token buffer, and the parser output and the index
+  // entries come from a single parse. The outputs replace the previous ones only once the whole
+  // file compiled, so that a file that fails keeps its previous outputs.
+  private void compile(
+      IOPaths ioPaths, Context context, Optional<ProjectIndexCollector> index) {
+    ResourceBudget.Permit permit = acquireBudget(ioPaths, 2 * FILES_PER_OUTPUT);
     try {
-      ImmutableList<JackToken> tokens = createAndWriteTokens(ioPaths);
-      BufferedWriter parserOutputWriter = createWriter(ioPaths.parserOutputPath());
-      parser.parse(
-          tokens,
-          Optional.of(context),
-          new ParsedXmlWriter(parserOutputWriter, JackParser.NON_TERMINALS_TO_PARSE));
-      parserOutputWriter.close();
+      long start = System.nanoTime();
+      TokenBuffer tokens = tokenize(ioPaths);
+      Optional<IndexingVisitor> indexingVisitor = index.isPresent()
+          ? Optional.of(index.get().visitorFor(ioPaths.inputFilePath(), tokens))
+          : Optional.absent();
+      try (OutputFileWriter tokenizerOutputWriter = createWriter(ioPaths.tokenizerOutputPath());
+          OutputFileWriter parserOutputWriter = createWriter(ioPaths.parserOutputPath())) {
+        tokensWriter.writeTokens(tokens, tokenizerOutputWriter);
+        JackElementVisitor outputs = UnreachableSubroutineFilter.wrap(
+            context, new ParsedXmlWriter(parserOutputWriter, JackParser.NON_TERMINALS_TO_PARSE));
+        parserFactory.get().parse(
+            tokens,
+            Optional.of(context),
+            MulticastVisitor.of(
+                Iterables.concat(ImmutableList.of(outputs), indexingVisitor.asSet())));
+        tokenizerOutputWriter.commit();
+        parserOutputWriter.commit();
+      }
+      if (indexingVisitor.isPresent()) {
+        index.get().add(indexingVisitor.get());
+      }
+      recordCost(ioPaths, start);
     } catch (IOException e) {
       throw new RuntimeException(e);
+    } finally {
+      permit.release();
     }
   }
 
-  private ImmutableList<JackToken> createAndWriteTokens(IOPaths ioPaths) throws IOException {
-    BufferedReader reader = createReader(ioPaths.inputFilePath());
-    ImmutableList<JackToken> tokens = tokenizer.tokenize(reader);
-    reader.close();
+  // A file can't have more tokens than characters, so its length bounds the tokens it holds.
+  // The whole budget of a file is acquired before the file is read, and held until it is done
+  // with.
+  private ResourceBudget.Permit acquireBudget(IOPaths ioPaths, int openFiles) {
+    return budget.acquire(inputLength(ioPaths), openFiles);
+  }
 
-    BufferedWriter tokenizerOutputWriter = createWriter(ioPaths.tokenizerOutputPath());
-    tokensWriter.writeTokens(tokens, tokenizerOutputWriter);
-    tokenizerOutputWriter.close();
+  static long inputLength(IOPaths ioPaths) {
+    return new File(ioPaths.inputFilePath()).length();
+  }
 
-    return tokens;
+  private TokenBuffer tokenize(IOPaths ioPaths) throws IOException {
+    try (BufferedReader reader = createReader(ioPaths.inputFilePath())) {
+      if (!parallelLexingChunkLines.isPresent()) {
+        return tokenizer.tokenizeToBuffer(reader);
+      }
+      // The chunks run on the common pool: the workers may all be busy waiting for them.
+      return tokenizer.tokenizeToBuffer(
+          reader.lines().collect(Collectors.toList()),
+          parallelLexingChunkLines.get(),
+          ForkJoinPool.commonPool());
+    }
   }
 }
@@ -0,0 +1,8 @@
+package com.computer.nand2tetris.compiler;
+
+// The kinds of events a JackElementVisitor receives while a file is parsed.
+public enum JackElementEvent {
+  BEGIN_NON_TERMINAL,
+  END_NON_TERMINAL,
+  TERMINAL
+}
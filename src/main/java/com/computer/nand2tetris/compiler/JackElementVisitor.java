@@ -1,10 +1,22 @@
 package com.computer.nand2tetris.compiler;
 
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.EnumSet;
+
 public interface JackElementVisitor {
 
+  ImmutableSet<JackElementEvent> ALL_EVENTS =
+      Sets.immutableEnumSet(EnumSet.allOf(JackElementEvent.class));
+
   void beginNonTerminalVisit(String nonTerminalText);
 
   void endNonTerminalVisit(String nonTerminalText);
 
   void visitTerminal(JackToken token);
+
+  // The events this visitor needs. MulticastVisitor doesn't forward the others.
+  default ImmutableSet<JackElementEvent> events() {
+    return ALL_EVENTS;
+  }
 }
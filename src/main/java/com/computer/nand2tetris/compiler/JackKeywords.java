@@ -0,0 +1,82 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.Arrays;
+
+// The Jack keywords, each identified by its position in KEYWORDS and backed by one shared
+// JackToken instance.
+public final class JackKeywords {
+
+  public static final int NOT_A_KEYWORD = -1;
+
+  public static final ImmutableList<String> KEYWORDS = ImmutableList.of(
+      "class", "constructor", "function",
+      "method", "field", "static", "var",
+      "int", "char", "boolean", "void", "true",
+      "false", "null", "this", "let", "do",
+      "if", "else", "while", "return");
+
+  private static final ImmutableList<JackToken> KEYWORD_TOKENS =
+      KEYWORDS
+          .stream()
+          .map(k -> JackToken.create(TokenType.KEYWORD, k))
+          .collect(ImmutableList.toImmutableList());
+
+  // A perfect hash of the keywords on their first and last characters and length: every keyword
+  // has its own slot, so a lookup compares against at most one keyword. The constants were
+  // searched for offline; the static initializer checks that they still give no collisions.
+  private static final int HASH_TABLE_SIZE = 32;
+  private static final int MIN_KEYWORD_LENGTH = 2;
+  private static final int MAX_KEYWORD_LENGTH = 11;
+  private static final int[] KEYWORD_IDS_BY_HASH = createHashTable();
+
+  private JackKeywords() {}
+
+  private static int hash(char first, char last, int length) {
+    return (first * 8 + last * 27 + length) & (HASH_TABLE_SIZE - 1);
+  }
+
+  private static int[] createHashTable() {
+    int[] table = new int[HASH_TABLE_SIZE];
+    Arrays.fill(table, NOT_A_KEYWORD);
+    for (int id = 0; id < KEYWORDS.size(); id++) {
+      String keyword = KEYWORDS.get(id);
+      int slot = hash(keyword.charAt(0), keyword.charAt(keyword.length() - 1), keyword.length());
+      Preconditions.checkState(
+          table[slot] == NOT_A_KEYWORD,
+          "Keywords %s and %s collide.", KEYWORDS.get(Math.max(table[slot], 0)), keyword);
+      table[slot] = id;
+    }
+    return table;
+  }
+
+  public static JackToken token(int keywordId) {
+    return KEYWORD_TOKENS.get(keywordId);
+  }
+
+  // Returns the id of the keyword spelled by text[start, end), or NOT_A_KEYWORD. Nothing is
+  // allocated.
+  public static int lookup(CharSequence text, int start, int end) {
+    int length = end - start;
+    if (length < MIN_KEYWORD_LENGTH || length > MAX_KEYWORD_LENGTH) {
+      return NOT_A_KEYWORD;
+    }
+    int id = KEYWORD_IDS_BY_HASH[hash(text.charAt(start), text.charAt(end - 1), length)];
+    return id != NOT_A_KEYWORD && regionEquals(KEYWORDS.get(id), text, start, length)
+        ? id : NOT_A_KEYWORD;
+  }
+
+  private static boolean regionEquals(String keyword, CharSequence text, int start, int length) {
+    if (keyword.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (keyword.charAt(i) != text.charAt(start + i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
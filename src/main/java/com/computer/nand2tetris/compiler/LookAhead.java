@@ -0,0 +1,16 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.base.Optional;
+
+public interface LookAhead<T> {
+
+  Optional<T> peek();
+
+  Optional<T> extract();
+
+  boolean isEmpty();
+
+  void putBack(T item);
+
+  void expect(String description);
+}
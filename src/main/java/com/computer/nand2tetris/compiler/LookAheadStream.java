@@ -3,35 +3,33 @@ package com.computer.nand2tetris.compiler;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
-import java.util.LinkedList;
-import java.util.List;
+import java.util.ArrayDeque;
+import java.util.Deque;
 
-public final class LookAheadStream<T> {
+public final class LookAheadStream<T> implements LookAhead<T> {
 
   Optional<T> lookAhead = Optional.absent();
-  List<T> restItems = new LinkedList<>();
+  Deque<T> restItems;
 
   public LookAheadStream(ImmutableList<T> items) {
-    resetStateFromList(new LinkedList<T>(items));
+    restItems = new ArrayDeque<>(items);
+    advance();
   }
 
+  @Override
   public Optional<T> peek() {
     return lookAhead;
   }
 
+  @Override
   public Optional<T> extract() {
     Optional<T> extractedLookAhead = peek();
-    resetStateFromList(restItems);
-    //System.err.println(restItems);
+    advance();
     return extractedLookAhead;
   }
 
-  private void resetStateFromList(List<T> items) {
-    lookAhead = Optional.absent();
-    if (!items.isEmpty()) {
-      lookAhead = Optional.of(items.get(0));
-      restItems = items.subList(1, items.size());
-    }
+  private void advance() {
+    lookAhead = restItems.isEmpty() ? Optional.absent() : Optional.of(restItems.pollFirst());
   }
 
   @Override
@@ -40,21 +38,20 @@ public final class LookAheadStream<T> {
         + ", stream: " + restItems.toString();
   }
 
+  @Override
   public boolean isEmpty() {
     return !peek().isPresent();
   }
 
+  @Override
   public void putBack(T token) {
     if (!isEmpty()) {
-      concat(lookAhead.get(), restItems);
+      restItems.addFirst(lookAhead.get());
     }
     lookAhead = Optional.of(token);
   }
 
-  private void concat(T lookAhead, List<T> restItems) {
-    restItems.add(0, lookAhead);
-  }
-
+  @Override
   public void expect(String tokenDescription) {
     Preconditions.checkArgument(
         !isEmpty(), "No further tokens. Expected %s", tokenDescription);
@@ -0,0 +1,68 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.util.EnumSet;
+
+// Forwards every event of a single parse to several visitors, so that all the outputs for a
+// file come from one parse. Each event only goes to the visitors that declare it in events().
+public final class MulticastVisitor implements JackElementVisitor {
+
+  private final JackElementVisitor[] beginVisitors;
+  private final JackElementVisitor[] endVisitors;
+  private final JackElementVisitor[] terminalVisitors;
+  private final ImmutableSet<JackElementEvent> events;
+
+  private MulticastVisitor(ImmutableList<JackElementVisitor> visitors) {
+    beginVisitors = interestedIn(visitors, JackElementEvent.BEGIN_NON_TERMINAL);
+    endVisitors = interestedIn(visitors, JackElementEvent.END_NON_TERMINAL);
+    terminalVisitors = interestedIn(visitors, JackElementEvent.TERMINAL);
+
+    EnumSet<JackElementEvent> events = EnumSet.noneOf(JackElementEvent.class);
+    visitors.forEach(v -> events.addAll(v.events()));
+    this.events = Sets.immutableEnumSet(events);
+  }
+
+  public static MulticastVisitor of(JackElementVisitor... visitors) {
+    return of(ImmutableList.copyOf(visitors));
+  }
+
+  public static MulticastVisitor of(Iterable<? extends JackElementVisitor> visitors) {
+    return new MulticastVisitor(ImmutableList.copyOf(visitors));
+  }
+
+  private static JackElementVisitor[] interestedIn(
+      ImmutableList<JackElementVisitor> visitors, JackElementEvent event) {
+    return visitors
+        .stream()
+        .filter(v -> v.events().contains(event))
+        .toArray(JackElementVisitor[]::new);
+  }
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {
+    for (JackElementVisitor visitor : beginVisitors) {
+      visitor.beginNonTerminalVisit(nonTerminalText);
+    }
+  }
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {
+    for (JackElementVisitor visitor : endVisitors) {
+      visitor.endNonTerminalVisit(nonTerminalText);
+    }
+  }
+
+  @Override
+  public void visitTerminal(JackToken token) {
+    for (JackElementVisitor visitor : terminalVisitors) {
+      visitor.visitTerminal(token);
+    }
+  }
+
+  @Override
+  public ImmutableSet<JackElementEvent> events() {
+    return events;
+  }
+}
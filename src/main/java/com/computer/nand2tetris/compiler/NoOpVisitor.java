@@ -0,0 +1,25 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.collect.ImmutableSet;
+
+// Ignores every event; used when only the success of the parse matters.
+public final class NoOpVisitor implements JackElementVisitor {
+
+  public static final NoOpVisitor INSTANCE = new NoOpVisitor();
+
+  private NoOpVisitor() {}
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {}
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {}
+
+  @Override
+  public void visitTerminal(JackToken token) {}
+
+  @Override
+  public ImmutableSet<JackElementEvent> events() {
+    return ImmutableSet.of();
+  }
+}
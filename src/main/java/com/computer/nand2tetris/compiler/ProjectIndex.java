@@ -0,0 +1,318 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.io.TemporaryFiles;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+// The classes, fields, subroutines and call sites of a whole project, in a compact format that
+// is used in place: loading maps the file into memory and a lookup probes an open addressing
+// table of keys, so neither depends on the size of the index. The file is made of int sections
+// followed by the UTF-8 bytes of all the strings:
+//
+//   header      magic, version, string count, entry count, table size
+//   strings     string count + 1 byte offsets of the strings
+//   entries     kind, class name, name, container, file, token index, line
+//               (strings are string numbers), sorted by key
+//   table       key string, first entry, entry count, or -1 for an empty slot
+//
+// An index is updated per file with withFile(), which replaces the entries of that file.
+public final class ProjectIndex {
+
+  private static final int MAGIC = 0x4A494458;  // "JIDX"
+  private static final int VERSION = 1;
+  private static final int HEADER_INTS = 5;
+  private static final int ENTRY_INTS = 7;
+  private static final int SLOT_INTS = 3;
+  private static final int EMPTY_SLOT = -1;
+  private static final IndexEntry.Kind[] KINDS = IndexEntry.Kind.values();
+  private static final Comparator<IndexEntry> ENTRY_ORDER =
+      Comparator.comparing(IndexEntry::key)
+          .thenComparing(IndexEntry::file)
+          .thenComparingInt(IndexEntry::tokenIndex);
+
+  private final ByteBuffer buffer;
+  private final int stringCount;
+  private final int entryCount;
+  private final int tableSize;
+  private final int entriesPosition;
+  private final int tablePosition;
+  private final int stringsPosition;
+
+  private ProjectIndex(ByteBuffer buffer) {
+    Preconditions.checkArgument(
+        buffer.capacity() >= HEADER_INTS * Integer.BYTES && buffer.getInt(0) == MAGIC,
+        "Not a project index.");
+    Preconditions.checkArgument(
+        buffer.getInt(Integer.BYTES) == VERSION, "Unsupported project index version.");
+    this.buffer = buffer;
+    this.stringCount = buffer.getInt(2 * Integer.BYTES);
+    this.entryCount = buffer.getInt(3 * Integer.BYTES);
+    this.tableSize = buffer.getInt(4 * Integer.BYTES);
+    this.entriesPosition = (HEADER_INTS + stringCount + 1) * Integer.BYTES;
+    this.tablePosition = entriesPosition + entryCount * ENTRY_INTS * Integer.BYTES;
+    this.stringsPosition = tablePosition + tableSize * SLOT_INTS * Integer.BYTES;
+    // The sections and the strings after them must fill the file exactly.
+    Preconditions.checkArgument(
+        stringCount >= 0
+            && entryCount >= 0
+            && tableSize >= 0
+            && intSectionsBytes(stringCount, entryCount, tableSize) <= buffer.capacity()
+            && stringStart(stringCount) == buffer.capacity(),
+        "Damaged project index.");
+  }
+
+  private static long intSectionsBytes(int stringCount, int entryCount, int tableSize) {
+    return (HEADER_INTS + stringCount + 1 + (long) entryCount * ENTRY_INTS
+        + (long) tableSize * SLOT_INTS) * Integer.BYTES;
+  }
+
+  public static ProjectIndex empty() {
+    return of(ImmutableList.of());
+  }
+
+  // Maps the file into memory; nothing else is read until it is queried.
+  public static ProjectIndex load(Path indexFile) {
+    try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+      return new ProjectIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // A damaged index, or one of another version, is rebuilt from the files of this run, like a
+  // missing one.
+  public static ProjectIndex loadOrEmpty(Path indexFile) {
+    if (!Files.exists(indexFile)) {
+      return empty();
+    }
+    try {
+      return load(indexFile);
+    } catch (IllegalArgumentException e) {
+      return empty();
+    }
+  }
+
+  public static ProjectIndex of(Iterable<IndexEntry> entries) {
+    return new ProjectIndex(encode(entries));
+  }
+
+  // The fields and subroutines with the given name, or the class if it is a class name.
+  public ImmutableList<IndexEntry> definitions(String name) {
+    return entries(name);
+  }
+
+  public ImmutableList<IndexEntry> callers(String className, String subroutineName) {
+    return entries(className + "." + subroutineName);
+  }
+
+  public ImmutableList<IndexEntry> allEntries() {
+    ImmutableList.Builder<IndexEntry> entries = ImmutableList.builder();
+    for (int entry = 0; entry < entryCount; entry++) {
+      entries.add(entry(entry));
+    }
+    return entries.build();
+  }
+
+  public ImmutableSet<String> files() {
+    return allEntries().stream().map(IndexEntry::file).collect(ImmutableSet.toImmutableSet());
+  }
+
+  // Returns a new index in which the entries of the file are replaced by the given ones.
+  public ProjectIndex withFile(String file, Iterable<IndexEntry> fileEntries) {
+    return withFiles(ImmutableList.of(file), fileEntries);
+  }
+
+  public ProjectIndex withFiles(Map<String, ? extends Iterable<IndexEntry>> entriesByFile) {
+    return withFiles(
+        entriesByFile.keySet(),
+        entriesByFile.values().stream()
+            .flatMap(e -> ImmutableList.copyOf(e).stream())
+            .collect(ImmutableList.toImmutableList()));
+  }
+
+  private ProjectIndex withFiles(Iterable<String> files, Iterable<IndexEntry> fileEntries) {
+    ImmutableSet<String> replacedFiles = ImmutableSet.copyOf(files);
+    ImmutableList.Builder<IndexEntry> entries = ImmutableList.builder();
+    allEntries().stream().filter(e -> !replacedFiles.contains(e.file())).forEach(entries::add);
+    return of(entries.addAll(fileEntries).build());
+  }
+
+  // Replaces the file atomically, so that readers never see a partially written index.
+  public void writeTo(Path indexFile) {
+    try {
+      Path temporaryFile = TemporaryFiles.createNextTo(indexFile);
+      boolean moved = false;
+      try {
+        try (FileChannel channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+          ByteBuffer content = buffer.duplicate();
+          content.clear();
+          while (content.hasRemaining()) {
+            channel.write(content);
+          }
+        }
+        Files.move(
+            temporaryFile,
+            indexFile,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        moved = true;
+      } finally {
+        if (!moved) {
+          Files.deleteIfExists(temporaryFile);
+        }
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private ImmutableList<IndexEntry> entries(String key) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    int mask = tableSize - 1;
+    for (int slot = mix(key.hashCode()) & mask; tableSize > 0; slot = (slot + 1) & mask) {
+      int slotPosition = tablePosition + slot * SLOT_INTS * Integer.BYTES;
+      int keyString = buffer.getInt(slotPosition);
+      if (keyString == EMPTY_SLOT) {
+        break;
+      }
+      if (stringEquals(keyString, keyBytes)) {
+        int first = buffer.getInt(slotPosition + Integer.BYTES);
+        int count = buffer.getInt(slotPosition + 2 * Integer.BYTES);
+        ImmutableList.Builder<IndexEntry> entries = ImmutableList.builder();
+        for (int entry = first; entry < first + count; entry++) {
+          entries.add(entry(entry));
+        }
+        return entries.build();
+      }
+    }
+    return ImmutableList.of();
+  }
+
+  private IndexEntry entry(int entry) {
+    int position = entriesPosition + entry * ENTRY_INTS * Integer.BYTES;
+    return IndexEntry.create(
+        KINDS[buffer.getInt(position)],
+        string(buffer.getInt(position + Integer.BYTES)),
+        string(buffer.getInt(position + 2 * Integer.BYTES)),
+        string(buffer.getInt(position + 3 * Integer.BYTES)),
+        string(buffer.getInt(position + 4 * Integer.BYTES)),
+        buffer.getInt(position + 5 * Integer.BYTES),
+        buffer.getInt(position + 6 * Integer.BYTES));
+  }
+
+  private int stringStart(int string) {
+    return stringsPosition + buffer.getInt((HEADER_INTS + string) * Integer.BYTES);
+  }
+
+  private String string(int string) {
+    int start = stringStart(string);
+    byte[] bytes = new byte[stringStart(string + 1) - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private boolean stringEquals(int string, byte[] bytes) {
+    int start = stringStart(string);
+    if (stringStart(string + 1) - start != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (buffer.get(start + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  private static ByteBuffer encode(Iterable<IndexEntry> unsortedEntries) {
+    List<IndexEntry> entries = ImmutableList.sortedCopyOf(ENTRY_ORDER, unsortedEntries);
+    Map<String, Integer> strings = new LinkedHashMap<>();
+    Map<String, int[]> rangesByKey = new LinkedHashMap<>();
+    for (int entry = 0; entry < entries.size(); entry++) {
+      IndexEntry indexEntry = entries.get(entry);
+      String key = indexEntry.key();
+      stringNumber(strings, key);
+      int[] range = rangesByKey.computeIfAbsent(key, k -> new int[2]);
+      if (range[1]++ == 0) {
+        range[0] = entry;
+      }
+    }
+    int tableSize = 1;
+    while (tableSize < rangesByKey.size() * 2) {
+      tableSize *= 2;
+    }
+    int[] table = new int[tableSize * SLOT_INTS];
+    Arrays.fill(table, EMPTY_SLOT);
+    for (Map.Entry<String, int[]> key : rangesByKey.entrySet()) {
+      int slot = mix(key.getKey().hashCode()) & (tableSize - 1);
+      while (table[slot * SLOT_INTS] != EMPTY_SLOT) {
+        slot = (slot + 1) & (tableSize - 1);
+      }
+      table[slot * SLOT_INTS] = strings.get(key.getKey());
+      table[slot * SLOT_INTS + 1] = key.getValue()[0];
+      table[slot * SLOT_INTS + 2] = key.getValue()[1];
+    }
+
+    int[] entryInts = new int[entries.size() * ENTRY_INTS];
+    for (int entry = 0; entry < entries.size(); entry++) {
+      IndexEntry indexEntry = entries.get(entry);
+      int position = entry * ENTRY_INTS;
+      entryInts[position] = indexEntry.kind().ordinal();
+      entryInts[position + 1] = stringNumber(strings, indexEntry.className());
+      entryInts[position + 2] = stringNumber(strings, indexEntry.name());
+      entryInts[position + 3] = stringNumber(strings, indexEntry.container());
+      entryInts[position + 4] = stringNumber(strings, indexEntry.file());
+      entryInts[position + 5] = indexEntry.tokenIndex();
+      entryInts[position + 6] = indexEntry.line();
+    }
+
+    List<byte[]> stringBytes = strings.keySet().stream()
+        .map(s -> s.getBytes(StandardCharsets.UTF_8))
+        .collect(Collectors.toList());
+    int[] stringOffsets = new int[stringBytes.size() + 1];
+    for (int string = 0; string < stringBytes.size(); string++) {
+      stringOffsets[string + 1] = stringOffsets[string] + stringBytes.get(string).length;
+    }
+
+    int intCount = HEADER_INTS + stringOffsets.length + entryInts.length + table.length;
+    ByteBuffer buffer =
+        ByteBuffer.allocate(intCount * Integer.BYTES + stringOffsets[stringBytes.size()]);
+    buffer.putInt(MAGIC).putInt(VERSION).putInt(stringBytes.size()).putInt(entries.size())
+        .putInt(tableSize);
+    buffer.asIntBuffer().put(stringOffsets);
+    buffer.position(buffer.position() + stringOffsets.length * Integer.BYTES);
+    buffer.asIntBuffer().put(entryInts);
+    buffer.position(buffer.position() + entryInts.length * Integer.BYTES);
+    buffer.asIntBuffer().put(table);
+    buffer.position(buffer.position() + table.length * Integer.BYTES);
+    stringBytes.forEach(buffer::put);
+    buffer.clear();
+    return buffer;
+  }
+
+  private static int stringNumber(Map<String, Integer> strings, String string) {
+    return strings.computeIfAbsent(string, s -> strings.size());
+  }
+}
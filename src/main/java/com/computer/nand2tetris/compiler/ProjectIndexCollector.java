@@ -0,0 +1,36 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.collect.ImmutableList;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+// Collects the index entries of the files compiled by a run and merges them into the project
+// index file, replacing the previous entries of those files only.
+final class ProjectIndexCollector {
+
+  private final Path indexFile;
+  private final ConcurrentMap<String, ImmutableList<IndexEntry>> entriesByFile =
+      new ConcurrentHashMap<>();
+
+  ProjectIndexCollector(Path indexFile) {
+    this.indexFile = indexFile;
+  }
+
+  // Files are identified by their absolute path, so that runs from different directories
+  // update the same entries.
+  IndexingVisitor visitorFor(String inputFilePath, TokenBuffer tokens) {
+    return new IndexingVisitor(
+        Paths.get(inputFilePath).toAbsolutePath().normalize().toString(), tokens);
+  }
+
+  // Called once the file has been parsed successfully.
+  void add(IndexingVisitor visitor) {
+    entriesByFile.put(visitor.file(), visitor.entries());
+  }
+
+  void write() {
+    ProjectIndex.loadOrEmpty(indexFile).withFiles(entriesByFile).writeTo(indexFile);
+  }
+}
@@ -0,0 +1,67 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import java.util.concurrent.Semaphore;
+
+// Bounds the files held open and the tokens held in memory by the compiling threads. A thread
+// that would exceed the budget blocks until other threads give back enough of it, which holds
+// back the files queued behind it. A request larger than the whole budget waits for all of it.
+final class ResourceBudget {
+
+  private static final Permit NO_PERMIT = () -> {};
+
+  private final Optional<Limit> openFiles;
+  private final Optional<Limit> residentTokens;
+
+  private ResourceBudget(Optional<Limit> openFiles, Optional<Limit> residentTokens) {
+    this.openFiles = openFiles;
+    this.residentTokens = residentTokens;
+  }
+
+  static ResourceBudget of(Optional<Integer> maxOpenFiles, Optional<Integer> maxResidentTokens) {
+    return new ResourceBudget(
+        maxOpenFiles.transform(Limit::new), maxResidentTokens.transform(Limit::new));
+  }
+
+  // Tokens are acquired before files and never the other way round, so that a thread holding
+  // files never waits for tokens held by a thread waiting for files.
+  Permit acquire(long tokens, int files) {
+    Permit tokensPermit = acquireResidentTokens(tokens);
+    Permit filesPermit = acquireOpenFiles(files);
+    return () -> {
+      filesPermit.release();
+      tokensPermit.release();
+    };
+  }
+
+  Permit acquireOpenFiles(int count) {
+    return openFiles.isPresent() ? openFiles.get().acquire(count) : NO_PERMIT;
+  }
+
+  Permit acquireResidentTokens(long count) {
+    return residentTokens.isPresent() ? residentTokens.get().acquire(count) : NO_PERMIT;
+  }
+
+  // The acquired part of the budget, given back once by release().
+  interface Permit {
+    void release();
+  }
+
+  private static final class Limit {
+    private final int max;
+    private final Semaphore semaphore;
+
+    Limit(int max) {
+      Preconditions.checkArgument(max > 0, "The budget must be positive.");
+      this.max = max;
+      this.semaphore = new Semaphore(max, true);
+    }
+
+    Permit acquire(long count) {
+      int permits = (int) Math.min(count, max);
+      semaphore.acquireUninterruptibly(permits);
+      return () -> semaphore.release(permits);
+    }
+  }
+}
@@ -0,0 +1,46 @@
+package com.computer.nand2tetris.compiler;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+
+public final class StandardLibraryManifest {
+
+  public static final String MANIFEST_PROPERTY = "jack.stdlib.manifest";
+
+  public static final ImmutableSet<String> JACK_OS_CLASS_NAMES =
+      ImmutableSet.of(
+          "Array",
+          "Keyboard",
+          "Math",
+          "Memory",
+          "Output",
+          "Screen",
+          "String",
+          "Sys");
+
+  private StandardLibraryManifest() {}
+
+  // Reads the manifest named by the jack.stdlib.manifest system property, falling back to the
+  // Jack OS classes when the property is not set.
+  public static ImmutableSet<String> load() {
+    String manifestPath = System.getProperty(MANIFEST_PROPERTY);
+    return manifestPath == null ? JACK_OS_CLASS_NAMES : load(manifestPath);
+  }
+
+  // A manifest lists one class name per line. Blank lines and lines starting with '#' are
+  // ignored.
+  public static ImmutableSet<String> load(String manifestPath) {
+    try {
+      return Files.readLines(new File(manifestPath), Charsets.UTF_8)
+          .stream()
+          .map(String::trim)
+          .filter(l -> !l.isEmpty() && !l.startsWith("#"))
+          .collect(ImmutableSet.toImmutableSet());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,339 @@
+package com.computer.nand2tetris.compiler;
+
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+// The tokens of a source file, stored as parallel int arrays of token types, start offsets and
+// lengths into the (preprocessed) source text, plus an int payload: the value of integer
+// constants, the keyword id of keywords, the character of symbols and the hash of identifiers
+// (equal to String.hashCode of their text). JackToken instances are only created when asked
+// for, and keywords and symbols share a single instance per spelling.
+public final class TokenBuffer {
+
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+  private static final JackToken[] SYMBOL_TOKENS = new JackToken[128];
+
+  private final char[] source;
+  private final int[] types;
+  private final int[] starts;
+  private final int[] lengths;
+  private final int[] values;
+  private final int size;
+
+  private TokenBuffer(Builder builder) {
+    this.source = Arrays.copyOf(builder.source, builder.sourceLength);
+    this.size = builder.size;
+    this.types = Arrays.copyOf(builder.types, size);
+    this.starts = Arrays.copyOf(builder.starts, size);
+    this.lengths = Arrays.copyOf(builder.lengths, size);
+    this.values = Arrays.copyOf(builder.values, size);
+  }
+
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public TokenType tokenType(int index) {
+    return TOKEN_TYPES[types[index]];
+  }
+
+  public int start(int index) {
+    return starts[index];
+  }
+
+  public int length(int index) {
+    return lengths[index];
+  }
+
+  public int intValue(int index) {
+    return values[index];
+  }
+
+  public String text(int index) {
+    return tokenType(index) == TokenType.INTEGER_CONSTANT
+        ? Integer.toString(values[index])
+        : new String(source, starts[index], lengths[index]);
+  }
+
+  public void writeText(int index, Writer writer) throws IOException {
+    if (tokenType(index) == TokenType.INTEGER_CONSTANT) {
+      writer.write(Integer.toString(values[index]));
+    } else {
+      writer.write(source, starts[index], lengths[index]);
+    }
+  }
+
+  // The lines of all the tokens, computed in a single pass over the source.
+  public int[] lineNumbers() {
+    int[] lineNumbers = new int[size];
+    int line = 1;
+    int position = 0;
+    for (int i = 0; i < size; i++) {
+      for (; position < starts[i]; position++) {
+        if (source[position] == '\n') {
+          line++;
+        }
+      }
+      lineNumbers[i] = line;
+    }
+    return lineNumbers;
+  }
+
+  // Compares the text of the token with the given text without creating a String.
+  public boolean textEquals(int index, String text) {
+    int length = lengths[index];
+    if (text.length() != length) {
+      return false;
+    }
+    int start = starts[index];
+    for (int i = 0; i < length; i++) {
+      if (source[start + i] != text.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Whether the token at index is the same token as the one at otherIndex in the other buffer.
+  public boolean sameToken(int index, TokenBuffer other, int otherIndex) {
+    if (types[index] != other.types[otherIndex]
+        || values[index] != other.values[otherIndex]
+        || lengths[index] != other.lengths[otherIndex]) {
+      return false;
+    }
+    int start = starts[index];
+    int otherStart = other.starts[otherIndex];
+    for (int i = 0; i < lengths[index]; i++) {
+      if (source[start + i] != other.source[otherStart + i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public JackToken token(int index) {
+    switch (tokenType(index)) {
+      case KEYWORD:
+        return JackKeywords.token(values[index]);
+      case SYMBOL:
+        return symbolToken((char) values[index]);
+      default:
+        return JackToken.create(tokenType(index), text(index));
+    }
+  }
+
+  // The 1-based source line of the token. The preprocessor keeps one line per input line, so
+  // this is also the line in the original file.
+  public int lineNumber(int index) {
+    int line = 1;
+    for (int i = 0; i < starts[index]; i++) {
+      if (source[i] == '\n') {
+        line++;
+      }
+    }
+    return line;
+  }
+
+  public Cursor cursor() {
+    return new Cursor();
+  }
+
+  private static JackToken symbolToken(char symbol) {
+    if (symbol >= SYMBOL_TOKENS.length) {
+      return JackToken.create(TokenType.SYMBOL, String.valueOf(symbol));
+    }
+    // Racy but benign: JackToken instances are immutable.
+    JackToken token = SYMBOL_TOKENS[symbol];
+    if (token == null) {
+      token = JackToken.create(TokenType.SYMBOL, String.valueOf(symbol));
+      SYMBOL_TOKENS[symbol] = token;
+    }
+    return token;
+  }
+
+  // A position in the buffer. Besides the LookAhead view used by the parser, it gives access to
+  // the type, payload and text of the token at the position without creating a JackToken.
+  // putBack() only accepts the token extracted last.
+  public final class Cursor implements LookAhead<JackToken> {
+
+    private int position = 0;
+    private int materializedPosition = -1;
+    private JackToken materializedToken;
+
+    private Cursor() {}
+
+    public int position() {
+      return position;
+    }
+
+    public void skip(int count) {
+      Preconditions.checkArgument(
+          count >= 0 && position + count <= size, "Cannot skip %s tokens.", count);
+      position += count;
+    }
+
+    public TokenType tokenType() {
+      return TokenBuffer.this.tokenType(position);
+    }
+
+    public int intValue() {
+      return values[position];
+    }
+
+    public String text() {
+      return TokenBuffer.this.text(position);
+    }
+
+    public TokenBuffer buffer() {
+      return TokenBuffer.this;
+    }
+
+    @Override
+    public Optional<JackToken> peek() {
+      return isEmpty() ? Optional.absent() : Optional.of(materialize(position));
+    }
+
+    @Override
+    public Optional<JackToken> extract() {
+      Optional<JackToken> token = peek();
+      if (token.isPresent()) {
+        position++;
+      }
+      return token;
+    }
+
+    @Override
+    public boolean isEmpty() {
+      return position >= size;
+    }
+
+    @Override
+    public void putBack(JackToken token) {
+      Preconditions.checkState(position > 0, "Nothing to put back.");
+      position--;
+    }
+
+    @Override
+    public void expect(String tokenDescription) {
+      Preconditions.checkArgument(
+          !isEmpty(), "No further tokens. Expected %s", tokenDescription);
+    }
+
+    private JackToken materialize(int index) {
+      if (materializedPosition != index) {
+        materializedToken = token(index);
+        materializedPosition = index;
+      }
+      return materializedToken;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder builder = new StringBuilder("lookAhead: ");
+      builder.append(isEmpty() ? "nil" : token(position).toString());
+      builder.append(", stream: [");
+      int end = Math.min(size, position + 10);
+      for (int i = position + 1; i < end; i++) {
+        builder.append(i > position + 1 ? ", " : "").append(token(i));
+      }
+      return builder.append(end < size ? ", ...]" : "]").toString();
+    }
+  }
+
+  public static final class Builder {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private char[] source = new char[INITIAL_CAPACITY * 8];
+    private int sourceLength = 0;
+    private int[] types = new int[INITIAL_CAPACITY];
+    private int[] starts = new int[INITIAL_CAPACITY];
+    private int[] lengths = new int[INITIAL_CAPACITY];
+    private int[] values = new int[INITIAL_CAPACITY];
+    private int size = 0;
+
+    private Builder() {}
+
+    // Appends text to the source and returns its offset within the source.
+    public int appendSource(CharSequence text) {
+      int offset = sourceLength;
+      ensureSourceCapacity(sourceLength + text.length());
+      for (int i = 0; i < text.length(); i++) {
+        source[sourceLength++] = text.charAt(i);
+      }
+      return offset;
+    }
+
+    // Appends the source text [sourceStart, sourceEnd) of another buffer along with its tokens
+    // [firstToken, endToken), which must lie within that text. Returns the amount by which the
+    // offsets of the copied text changed.
+    public int appendFrom(
+        TokenBuffer from, int sourceStart, int sourceEnd, int firstToken, int endToken) {
+      int shift = sourceLength - sourceStart;
+      ensureSourceCapacity(sourceLength + sourceEnd - sourceStart);
+      System.arraycopy(from.source, sourceStart, source, sourceLength, sourceEnd - sourceStart);
+      sourceLength += sourceEnd - sourceStart;
+
+      int count = endToken - firstToken;
+      ensureTokenCapacity(size + count);
+      System.arraycopy(from.types, firstToken, types, size, count);
+      System.arraycopy(from.lengths, firstToken, lengths, size, count);
+      System.arraycopy(from.values, firstToken, values, size, count);
+      for (int i = 0; i < count; i++) {
+        starts[size + i] = from.starts[firstToken + i] + shift;
+      }
+      size += count;
+      return shift;
+    }
+
+    public void appendAll(TokenBuffer from) {
+      appendFrom(from, 0, from.source.length, 0, from.size);
+    }
+
+    public Builder add(TokenType tokenType, int start, int length, int value) {
+      ensureTokenCapacity(size + 1);
+      types[size] = tokenType.ordinal();
+      starts[size] = start;
+      lengths[size] = length;
+      values[size] = value;
+      size++;
+      return this;
+    }
+
+    public int size() {
+      return size;
+    }
+
+    public int sourceLength() {
+      return sourceLength;
+    }
+
+    public TokenBuffer build() {
+      return new TokenBuffer(this);
+    }
+
+    private void ensureTokenCapacity(int capacity) {
+      if (capacity > types.length) {
+        int newCapacity = Math.max(capacity, types.length * 2);
+        types = Arrays.copyOf(types, newCapacity);
+        starts = Arrays.copyOf(starts, newCapacity);
+        lengths = Arrays.copyOf(lengths, newCapacity);
+        values = Arrays.copyOf(values, newCapacity);
+      }
+    }
+
+    private void ensureSourceCapacity(int capacity) {
+      if (capacity > source.length) {
+        source = Arrays.copyOf(source, Math.max(capacity, source.length * 2));
+      }
+    }
+  }
+}
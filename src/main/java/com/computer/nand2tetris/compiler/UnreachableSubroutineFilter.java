@@ -0,0 +1,98 @@
+package com.computer.nand2tetris.compiler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Drops the events of the subroutineDecs that the context doesn't list as reachable. The name of
+// a subroutine comes after the beginning of its subroutineDec, so the events are held back until
+// the name is known.
+final class UnreachableSubroutineFilter implements JackElementVisitor {
+
+  private final Context context;
+  private final JackElementVisitor delegate;
+  private final List<Consumer<JackElementVisitor>> heldBackEvents = new ArrayList<>();
+  private String className = "";
+  private boolean inClassName = false;
+  private boolean inSubroutineName = false;
+  private boolean holdingBack = false;
+  private boolean dropping = false;
+
+  private UnreachableSubroutineFilter(Context context, JackElementVisitor delegate) {
+    this.context = context;
+    this.delegate = delegate;
+  }
+
+  // Returns the visitor itself unless the context is for a whole program.
+  static JackElementVisitor wrap(Context context, JackElementVisitor visitor) {
+    return context.reachableSubroutines().isPresent()
+        ? new UnreachableSubroutineFilter(context, visitor) : visitor;
+  }
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {
+    switch (nonTerminalText) {
+      case "class":
+        className = "";
+        break;
+      case "className":
+        inClassName = className.isEmpty();
+        break;
+      case "subroutineDec":
+        holdingBack = true;
+        break;
+      case "subroutineName":
+        inSubroutineName = holdingBack;
+        break;
+      default:
+        break;
+    }
+    forward(v -> v.beginNonTerminalVisit(nonTerminalText));
+  }
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {
+    forward(v -> v.endNonTerminalVisit(nonTerminalText));
+    switch (nonTerminalText) {
+      case "className":
+        inClassName = false;
+        break;
+      case "subroutineName":
+        inSubroutineName = false;
+        break;
+      case "subroutineDec":
+        dropping = false;
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void visitTerminal(JackToken token) {
+    if (inClassName) {
+      className = token.tokenText();
+    }
+    forward(v -> v.visitTerminal(token));
+    if (inSubroutineName) {
+      holdingBack = false;
+      if (context.isReachable(className, token.tokenText())) {
+        heldBackEvents.forEach(e -> e.accept(delegate));
+      } else {
+        dropping = true;
+      }
+      heldBackEvents.clear();
+    }
+  }
+
+  private void forward(Consumer<JackElementVisitor> event) {
+    if (dropping) {
+      return;
+    }
+    if (holdingBack) {
+      heldBackEvents.add(event);
+    } else {
+      event.accept(delegate);
+    }
+  }
+}
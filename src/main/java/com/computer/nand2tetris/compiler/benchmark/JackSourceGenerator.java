@@ -0,0 +1,86 @@
+package com.computer.nand2tetris.compiler.benchmark;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+
+// Generates Jack classes that grow along one dimension. The returned maps are keyed by class
+// name.
+final class JackSourceGenerator {
+
+  private JackSourceGenerator() {}
+
+  // A class with the given number of subroutines.
+  static ImmutableMap<String, String> longFile(int subroutineCount) {
+    StringBuilder builder = new StringBuilder("class Long {\n  field int a, b;\n");
+    for (int i = 0; i < subroutineCount; i++) {
+      builder
+          .append("  method int m").append(i).append("(int x, char y) {\n")
+          .append("    var int i, j;\n")
+          .append("    let i = x + ").append(i).append(";\n")
+          .append("    while (i < 100) { let i = i + 1; do Output.printInt(i); }\n")
+          .append("    if (i > 3) { let j = -i; } else { do Output.printString(\"s\"); }\n")
+          .append("    return i;\n")
+          .append("  }\n");
+    }
+    return ImmutableMap.of("Long", builder.append("}\n").toString());
+  }
+
+  // A single statement whose expression has the given number of terms, all on one line.
+  static ImmutableMap<String, String> longLine(int termCount) {
+    StringBuilder builder = new StringBuilder(
+        "class Line {\n  function int f() {\n    var int x;\n    let x = 1");
+    for (int i = 1; i < termCount; i++) {
+      builder.append(" + ").append(i);
+    }
+    return ImmutableMap.of("Line", builder.append(";\n    return x;\n  }\n}\n").toString());
+  }
+
+  // While statements nested to the given depth.
+  static ImmutableMap<String, String> deepNesting(int depth) {
+    StringBuilder builder = new StringBuilder(
+        "class Deep {\n  function void f() {\n    var int x;\n");
+    for (int i = 0; i < depth; i++) {
+      builder.append(Strings.repeat(" ", i % 64)).append("while (x < 1) {\n");
+    }
+    builder.append("let x = x + 1;\n");
+    for (int i = 0; i < depth; i++) {
+      builder.append("}\n");
+    }
+    return ImmutableMap.of("Deep", builder.append("    return;\n  }\n}\n").toString());
+  }
+
+  // The given number of statements surrounded by line, block and multiline comments, plus a
+  // line holding that many inline comments.
+  static ImmutableMap<String, String> manyComments(int commentCount) {
+    StringBuilder builder = new StringBuilder(
+        "/** Comments. */\nclass Comments {\n  function void f() {\n    var int x;\n");
+    for (int i = 0; i < commentCount; i++) {
+      builder
+          .append("    // line comment ").append(i).append("\n")
+          .append("    /* block */ let x = x /* a */ + /* b */ 1; // tail\n")
+          .append("    /* spanning\n       lines */\n");
+    }
+    builder.append("    let x = 0");
+    for (int i = 0; i < commentCount; i++) {
+      builder.append(" /* c */ + 1");
+    }
+    return ImmutableMap.of("Comments", builder.append(";\n    return;\n  }\n}\n").toString());
+  }
+
+  // The given number of classes, each calling the next one.
+  static ImmutableMap<String, String> manyClasses(int classCount) {
+    ImmutableMap.Builder<String, String> classes = ImmutableMap.builder();
+    for (int i = 0; i < classCount; i++) {
+      String className = "C" + i;
+      classes.put(
+          className,
+          "class " + className + " {\n"
+              + "  function void f() {\n"
+              + (i + 1 < classCount ? "    do C" + (i + 1) + ".f();\n" : "")
+              + "    return;\n"
+              + "  }\n"
+              + "}\n");
+    }
+    return classes.build();
+  }
+}
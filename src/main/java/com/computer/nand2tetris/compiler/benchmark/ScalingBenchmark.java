@@ -0,0 +1,211 @@
+package com.computer.nand2tetris.compiler.benchmark;
+
+import com.computer.nand2tetris.compiler.Context;
+import com.computer.nand2tetris.compiler.ContextBuilder;
+import com.computer.nand2tetris.compiler.JackAnalyzer;
+import com.computer.nand2tetris.compiler.NoOpVisitor;
+import com.computer.nand2tetris.compiler.StandardLibraryManifest;
+import com.computer.nand2tetris.compiler.TokenBuffer;
+import com.computer.nand2tetris.compiler.parser.JackParser;
+import com.computer.nand2tetris.compiler.tokenizer.JackTokenizer;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+// Times the tokenizer, the parser and the whole analyzer on inputs that double in size along
+// several dimensions, fits the growth exponent of the running time (the slope of log time over
+// log size) and fails when any exponent exceeds the bound. Usage:
+//
+//   ScalingBenchmark [--max-exponent=1.3] [--doublings=5] [--repetitions=5]
+public final class ScalingBenchmark {
+
+  private static final long STACK_SIZE = 1L << 30;
+
+  private enum Dimension {
+    FILE_LENGTH(50, JackSourceGenerator::longFile),
+    LINE_LENGTH(500, JackSourceGenerator::longLine),
+    NESTING_DEPTH(50, JackSourceGenerator::deepNesting),
+    COMMENTS(200, JackSourceGenerator::manyComments),
+    CLASSES_PER_DIRECTORY(20, JackSourceGenerator::manyClasses);
+
+    private final int baseSize;
+    private final IntFunction<ImmutableMap<String, String>> generator;
+
+    Dimension(int baseSize, IntFunction<ImmutableMap<String, String>> generator) {
+      this.baseSize = baseSize;
+      this.generator = generator;
+    }
+  }
+
+  private enum Stage {
+    TOKENIZER, PARSER, ANALYZER
+  }
+
+  private final double maxExponent;
+  private final int doublings;
+  private final int repetitions;
+  private final JackTokenizer tokenizer = new JackTokenizer();
+
+  private ScalingBenchmark(double maxExponent, int doublings, int repetitions) {
+    this.maxExponent = maxExponent;
+    this.doublings = doublings;
+    this.repetitions = repetitions;
+  }
+
+  public static void main(String[] args) throws Exception {
+    double maxExponent = 1.3;
+    int doublings = 5;
+    int repetitions = 5;
+    for (String arg : args) {
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if (arg.startsWith("--max-exponent=")) {
+        maxExponent = Double.parseDouble(value);
+      } else if (arg.startsWith("--doublings=")) {
+        doublings = Integer.parseInt(value);
+      } else if (arg.startsWith("--repetitions=")) {
+        repetitions = Integer.parseInt(value);
+      } else {
+        throw new IllegalArgumentException("Unknown option " + arg);
+      }
+    }
+    Preconditions.checkArgument(doublings >= 2, "At least 2 doublings are needed for a fit.");
+
+    ScalingBenchmark benchmark = new ScalingBenchmark(maxExponent, doublings, repetitions);
+    // Deeply nested inputs need a deep stack for the recursive descent parser.
+    Throwable[] failure = new Throwable[1];
+    Thread thread = new Thread(null, () -> {
+      try {
+        benchmark.run();
+      } catch (Throwable t) {
+        failure[0] = t;
+      }
+    }, "scaling-benchmark", STACK_SIZE);
+    thread.start();
+    thread.join();
+    if (failure[0] != null) {
+      throw new RuntimeException(failure[0]);
+    }
+  }
+
+  private void run() throws IOException {
+    ImmutableList.Builder<String> violations = ImmutableList.builder();
+    for (Dimension dimension : Dimension.values()) {
+      for (Stage stage : Stage.values()) {
+        double exponent = measureExponent(dimension, stage);
+        String result = String.format("%s / %s: exponent %.2f", dimension, stage, exponent);
+        System.out.println(result);
+        if (exponent > maxExponent) {
+          violations.add(result);
+        }
+      }
+    }
+    ImmutableList<String> failures = violations.build();
+    Preconditions.checkState(
+        failures.isEmpty(),
+        "Running time grows faster than size^%s: %s", maxExponent, failures);
+  }
+
+  private double measureExponent(Dimension dimension, Stage stage) throws IOException {
+    // warm up on the smallest input.
+    time(dimension.generator.apply(dimension.baseSize), stage);
+
+    double[] logSizes = new double[doublings + 1];
+    double[] logTimes = new double[doublings + 1];
+    for (int i = 0; i <= doublings; i++) {
+      int size = dimension.baseSize << i;
+      long nanos = time(dimension.generator.apply(size), stage);
+      System.out.printf("  %s / %s size %d: %.3f ms%n", dimension, stage, size, nanos / 1e6);
+      logSizes[i] = Math.log(size);
+      logTimes[i] = Math.log(Math.max(nanos, 1));
+    }
+    return slope(logSizes, logTimes);
+  }
+
+  // Least squares slope of y over x.
+  private static double slope(double[] x, double[] y) {
+    double meanX = 0;
+    double meanY = 0;
+    for (int i = 0; i < x.length; i++) {
+      meanX += x[i] / x.length;
+      meanY += y[i] / y.length;
+    }
+    double covariance = 0;
+    double variance = 0;
+    for (int i = 0; i < x.length; i++) {
+      covariance += (x[i] - meanX) * (y[i] - meanY);
+      variance += (x[i] - meanX) * (x[i] - meanX);
+    }
+    return covariance / variance;
+  }
+
+  // The fastest of the repetitions, in nanoseconds.
+  private long time(ImmutableMap<String, String> sources, Stage stage) throws IOException {
+    switch (stage) {
+      case TOKENIZER:
+        return fastest(() -> sources.values().forEach(this::tokenize));
+      case PARSER:
+        ImmutableList<TokenBuffer> tokens = sources
+            .values()
+            .stream()
+            .map(this::tokenize)
+            .collect(ImmutableList.toImmutableList());
+        ContextBuilder contextBuilder = new ContextBuilder(StandardLibraryManifest.load());
+        sources.keySet().forEach(contextBuilder::addClassName);
+        Optional<Context> context = Optional.of(contextBuilder.build());
+        return fastest(() -> tokens.forEach(
+            t -> new JackParser().parse(t, context, NoOpVisitor.INSTANCE)));
+      case ANALYZER:
+        Path directory = writeSources(sources);
+        try {
+          return fastest(() -> analyze(directory));
+        } finally {
+          MoreFiles.deleteRecursively(directory, RecursiveDeleteOption.ALLOW_INSECURE);
+        }
+      default:
+        throw new IllegalArgumentException("Unknown stage " + stage);
+    }
+  }
+
+  private long fastest(Runnable runnable) {
+    long fastest = Long.MAX_VALUE;
+    for (int i = 0; i < repetitions; i++) {
+      long start = System.nanoTime();
+      runnable.run();
+      fastest = Math.min(fastest, System.nanoTime() - start);
+    }
+    return fastest;
+  }
+
+  private TokenBuffer tokenize(String source) {
+    return tokenizer.tokenizeToBuffer(new BufferedReader(new StringReader(source)));
+  }
+
+  private static void analyze(Path directory) {
+    try {
+      JackAnalyzer.main(new String[] {directory.toString()});
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static Path writeSources(ImmutableMap<String, String> sources) throws IOException {
+    Path directory = Files.createTempDirectory("jack-scaling");
+    for (Map.Entry<String, String> source : sources.entrySet()) {
+      Files.write(
+          directory.resolve(source.getKey() + ".jack"),
+          source.getValue().getBytes(Charsets.UTF_8));
+    }
+    return directory;
+  }
+}
@@ -0,0 +1,161 @@
+package com.computer.nand2tetris.compiler.benchmark;
+
+import com.computer.nand2tetris.compiler.JackAnalyzer;
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.MoreFiles;
+import com.google.common.io.RecursiveDeleteOption;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.stream.Stream;
+
+// Starts the analyzer in a new JVM on a small module, the way the build compiles each module,
+// and reports the median time from the start of the process to its first output file and to
+// its exit. With --archive, every run is repeated with the class data sharing archive. Usage:
+//
+//   StartupBenchmark --write-training-input=DIR
+//   StartupBenchmark [--archive=FILE] [--runs=10] DIR
+//
+// The training input is always the same, so that "mvn -Pcds package" archives the same classes
+// on every build. The JVMs are started with the classpath of this one, which must be made of
+// jars for the archive to be used.
+public final class StartupBenchmark {
+
+  private static final String OUTPUT_DIRECTORY = "parseroutput";
+  // The first JDK with -XX:ArchiveClassesAtExit.
+  private static final int ARCHIVING_JAVA_VERSION = 13;
+
+  private final Path inputDirectory;
+  private final int runs;
+
+  private StartupBenchmark(Path inputDirectory, int runs) {
+    this.inputDirectory = inputDirectory;
+    this.runs = runs;
+  }
+
+  public static void main(String[] args) throws Exception {
+    Optional<String> archive = Optional.absent();
+    int runs = 10;
+    Optional<Path> inputDirectory = Optional.absent();
+    for (String arg : args) {
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if (arg.startsWith("--write-training-input=")) {
+        checkArchivingSupported();
+        writeTrainingInput(Paths.get(value));
+        return;
+      } else if (arg.startsWith("--archive=")) {
+        archive = Optional.of(value);
+      } else if (arg.startsWith("--runs=")) {
+        runs = Integer.parseInt(value);
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option " + arg);
+      } else {
+        inputDirectory = Optional.of(Paths.get(arg));
+      }
+    }
+    Preconditions.checkArgument(inputDirectory.isPresent(), "Expected an input directory.");
+    Preconditions.checkArgument(runs > 0, "--runs expects a positive number.");
+
+    StartupBenchmark benchmark = new StartupBenchmark(inputDirectory.get(), runs);
+    benchmark.report("default", ImmutableList.of());
+    if (archive.isPresent()) {
+      benchmark.report(
+          "cds archive", ImmutableList.of("-XX:SharedArchiveFile=" + archive.get()));
+    }
+  }
+
+  // The training input is the first step of "mvn -Pcds package", which then archives with the
+  // same java. Failing here is clearer than the JVM rejecting the unknown option.
+  private static void checkArchivingSupported() {
+    String version = System.getProperty("java.specification.version");
+    int major = Integer.parseInt(version.startsWith("1.") ? version.substring(2) : version);
+    Preconditions.checkState(
+        major >= ARCHIVING_JAVA_VERSION,
+        "The cds profile needs JDK %s or later for -XX:ArchiveClassesAtExit, but java is %s.",
+        ARCHIVING_JAVA_VERSION,
+        version);
+  }
+
+  // A handful of small classes calling each other plus one class with comments, about the size
+  // of one of our modules.
+  private static void writeTrainingInput(Path directory) throws IOException {
+    Files.createDirectories(directory);
+    ImmutableMap<String, String> sources = ImmutableMap.<String, String>builder()
+        .putAll(JackSourceGenerator.manyClasses(8))
+        .putAll(JackSourceGenerator.manyComments(20))
+        .build();
+    for (Map.Entry<String, String> source : sources.entrySet()) {
+      Files.write(
+          directory.resolve(source.getKey() + ".jack"),
+          source.getValue().getBytes(Charsets.UTF_8));
+    }
+  }
+
+  private void report(String name, ImmutableList<String> jvmOptions) throws Exception {
+    long[] firstOutputNanos = new long[runs];
+    long[] exitNanos = new long[runs];
+    for (int i = 0; i < runs; i++) {
+      long[] times = run(jvmOptions);
+      firstOutputNanos[i] = times[0];
+      exitNanos[i] = times[1];
+    }
+    System.out.printf(
+        "%s: first output %.1f ms, exit %.1f ms (median of %d runs)%n",
+        name, median(firstOutputNanos) / 1e6, median(exitNanos) / 1e6, runs);
+  }
+
+  // The nanoseconds from the start of the process to its first output file and to its exit.
+  private long[] run(ImmutableList<String> jvmOptions) throws Exception {
+    Path outputDirectory = inputDirectory.resolve(OUTPUT_DIRECTORY);
+    if (Files.exists(outputDirectory)) {
+      MoreFiles.deleteRecursively(outputDirectory, RecursiveDeleteOption.ALLOW_INSECURE);
+    }
+    ImmutableList<String> command = ImmutableList.<String>builder()
+        .add(Paths.get(System.getProperty("java.home"), "bin", "java").toString())
+        .addAll(jvmOptions)
+        .add("-cp", System.getProperty("java.class.path"))
+        .add(JackAnalyzer.class.getName())
+        .add(inputDirectory.toString())
+        .build();
+
+    long start = System.nanoTime();
+    Process process = new ProcessBuilder(command).inheritIO().start();
+    long firstOutput = -1;
+    while (firstOutput < 0 && process.isAlive()) {
+      if (hasOutput(outputDirectory)) {
+        firstOutput = System.nanoTime();
+      } else {
+        Thread.sleep(1);
+      }
+    }
+    int exitCode = process.waitFor();
+    long exit = System.nanoTime();
+    Preconditions.checkState(exitCode == 0, "The analyzer exited with %s.", exitCode);
+    if (firstOutput < 0) {
+      firstOutput = exit;
+    }
+    return new long[] {firstOutput - start, exit - start};
+  }
+
+  private static boolean hasOutput(Path outputDirectory) throws IOException {
+    if (!Files.isDirectory(outputDirectory)) {
+      return false;
+    }
+    try (Stream<Path> outputs = Files.list(outputDirectory)) {
+      return outputs.anyMatch(p -> !p.getFileName().toString().startsWith("."));
+    }
+  }
+
+  private static long median(long[] values) {
+    long[] sorted = values.clone();
+    Arrays.sort(sorted);
+    return sorted[sorted.length / 2];
+  }
+}
@@ -0,0 +1,108 @@
+package com.computer.nand2tetris.compiler.codegen;
+
+import com.computer.nand2tetris.compiler.TokenBuffer;
+import com.computer.nand2tetris.compiler.parser.JackParser;
+import com.computer.nand2tetris.compiler.tokenizer.JackTokenizer;
+import com.computer.nand2tetris.compiler.vm.HackTranslator;
+import com.computer.nand2tetris.compiler.vm.VmProgram;
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// Compiles .jack files to .vm files next to them with VmCodeGenerator. The files are compiled
+// one after the other, so that the string pool is numbered the same way on every run. Usage:
+//
+//   JackCompiler [--string-pool] [--asm=FILE.asm] (file.jack | directory)...
+//
+// --string-pool writes the pooled string constants to StringPool.vm, next to the first file.
+// --asm then translates every .vm file of the directories of the inputs, which should include
+// those of the OS, to Hack assembly.
+public final class JackCompiler {
+
+  private JackCompiler() {}
+
+  public static void main(String[] args) {
+    boolean poolStrings = false;
+    Optional<File> assemblyFile = Optional.absent();
+    ImmutableList.Builder<File> jackFiles = ImmutableList.builder();
+    for (String arg : args) {
+      if (arg.equals("--string-pool")) {
+        poolStrings = true;
+      } else if (arg.startsWith("--asm=")) {
+        assemblyFile = Optional.of(new File(arg.substring("--asm=".length())));
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option " + arg);
+      } else {
+        jackFiles.addAll(filesWithExtension(new File(arg), ".jack"));
+      }
+    }
+    ImmutableList<File> files = jackFiles.build();
+    Preconditions.checkArgument(!files.isEmpty(), "Expected at least one .jack file or directory.");
+
+    Optional<StringConstantPool> stringPool =
+        poolStrings ? Optional.of(new StringConstantPool()) : Optional.absent();
+    Set<File> directories = new LinkedHashSet<>();
+    for (File file : files) {
+      VmCodeGenerator generator = compile(file, stringPool);
+      write(new File(file.getParentFile(), generator.className().get() + ".vm"), generator.lines());
+      directories.add(file.getAbsoluteFile().getParentFile());
+    }
+    if (stringPool.isPresent()) {
+      File first = files.get(0).getAbsoluteFile().getParentFile();
+      write(new File(first, StringConstantPool.CLASS_NAME + ".vm"), stringPool.get().lines());
+      System.err.printf("%d string constants pooled.%n", stringPool.get().size());
+    }
+    if (assemblyFile.isPresent()) {
+      ImmutableList.Builder<File> vmFiles = ImmutableList.builder();
+      directories.forEach(d -> vmFiles.addAll(filesWithExtension(d, ".vm")));
+      ImmutableList<String> assembly = HackTranslator.translate(VmProgram.load(vmFiles.build()));
+      write(assemblyFile.get(), assembly);
+      System.err.printf(
+          "%s: %d instructions in ROM.%n",
+          assemblyFile.get(),
+          HackTranslator.romSize(assembly));
+    }
+  }
+
+  private static VmCodeGenerator compile(File file, Optional<StringConstantPool> stringPool) {
+    VmCodeGenerator generator = new VmCodeGenerator(stringPool);
+    try (BufferedReader reader = Files.newReader(file, Charsets.UTF_8)) {
+      TokenBuffer tokens = new JackTokenizer().tokenizeToBuffer(reader);
+      new JackParser().parse(tokens, Optional.absent(), generator);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    } catch (RuntimeException e) {
+      throw new IllegalArgumentException(file + ": " + e.getMessage(), e);
+    }
+    return generator;
+  }
+
+  private static void write(File file, ImmutableList<String> lines) {
+    try {
+      Files.asCharSink(file, Charsets.UTF_8).write(Joiner.on('\n').join(lines) + "\n");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // The files with the extension directly in a directory, sorted by name.
+  private static ImmutableList<File> filesWithExtension(File location, String extension) {
+    if (!location.isDirectory()) {
+      return ImmutableList.of(location);
+    }
+    File[] files = location.listFiles((d, n) -> n.endsWith(extension));
+    return files == null
+        ? ImmutableList.of()
+        : ImmutableList.sortedCopyOf(
+            Comparator.comparing(File::getName), ImmutableList.copyOf(files));
+  }
+}
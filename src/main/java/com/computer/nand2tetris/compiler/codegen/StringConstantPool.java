@@ -0,0 +1,69 @@
+package com.computer.nand2tetris.compiler.codegen;
+
+import com.google.common.collect.ImmutableList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// The distinct string constants of a program, numbered in the order they are first seen. The
+// generated StringPool class builds all of them once, in an Array, when Main.main starts, and
+// StringPool.get(i) returns the i-th. Since every evaluation of a constant then returns the same
+// String, a program must not change or dispose of the strings it gets from constants.
+public final class StringConstantPool {
+
+  static final String CLASS_NAME = "StringPool";
+  static final String PROGRAM_ENTRY = "Main.main";
+  static final String INIT_CALL = "call " + CLASS_NAME + ".init 0";
+  static final String GET_CALL = "call " + CLASS_NAME + ".get 1";
+
+  private final Map<String, Integer> indices = new LinkedHashMap<>();
+
+  public int indexOf(String constant) {
+    Integer index = indices.get(constant);
+    if (index == null) {
+      index = indices.size();
+      indices.put(constant, index);
+    }
+    return index;
+  }
+
+  public int size() {
+    return indices.size();
+  }
+
+  // The VM code of the StringPool class. init does nothing once the strings are built.
+  public ImmutableList<String> lines() {
+    ImmutableList.Builder<String> lines = ImmutableList.builder();
+    lines.add(
+        "function " + CLASS_NAME + ".init 0",
+        "push static 0",
+        "if-goto BUILT",
+        "push constant " + Math.max(indices.size(), 1),
+        "call Array.new 1",
+        "pop static 0");
+    for (Map.Entry<String, Integer> constant : indices.entrySet()) {
+      String text = constant.getKey();
+      lines.add(
+          "push static 0",
+          "push constant " + constant.getValue(),
+          "add",
+          "push constant " + text.length(),
+          "call String.new 1");
+      for (int i = 0; i < text.length(); i++) {
+        lines.add("push constant " + (int) text.charAt(i), "call String.appendChar 2");
+      }
+      lines.add("pop temp 0", "pop pointer 1", "push temp 0", "pop that 0");
+    }
+    lines.add(
+        "label BUILT",
+        "push constant 0",
+        "return",
+        "function " + CLASS_NAME + ".get 0",
+        "push static 0",
+        "push argument 0",
+        "add",
+        "pop pointer 1",
+        "push that 0",
+        "return");
+    return lines.build();
+  }
+}
@@ -0,0 +1,355 @@
+package com.computer.nand2tetris.compiler.codegen;
+
+import com.computer.nand2tetris.compiler.JackElementVisitor;
+import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.computer.nand2tetris.compiler.symbols.SymbolKind;
+import com.computer.nand2tetris.compiler.symbols.SymbolTable;
+import com.computer.nand2tetris.compiler.symbols.SymbolTableBuilder;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+// Generates the VM code of one class from the events of JackParser. Jack has no operator
+// precedence, so the code is emitted as the events come: a binary operator is emitted when the
+// term after it ends, and the code of each subroutine is buffered until its local variables are
+// counted.
+//
+// With a StringConstantPool, string constants are fetched from the pool instead of being built
+// with String.new and String.appendChar every time they are evaluated.
+public final class VmCodeGenerator implements JackElementVisitor {
+
+  private static final ImmutableMap<String, String> BINARY_OPERATORS =
+      ImmutableMap.<String, String>builder()
+          .put("+", "add")
+          .put("-", "sub")
+          .put("*", "call Math.multiply 2")
+          .put("/", "call Math.divide 2")
+          .put("&", "and")
+          .put("|", "or")
+          .put("<", "lt")
+          .put(">", "gt")
+          .put("=", "eq")
+          .build();
+
+  private static final ImmutableMap<String, String> UNARY_OPERATORS =
+      ImmutableMap.of("-", "neg", "~", "not");
+
+  private final SymbolTableBuilder symbols = new SymbolTableBuilder(new SymbolTable());
+  private final Optional<StringConstantPool> stringPool;
+  private final ImmutableList.Builder<String> lines = ImmutableList.builder();
+  // The open non-terminals, innermost last.
+  private final List<String> nonTerminals = new ArrayList<>();
+
+  private String subroutineKind = "";
+  private String subroutineName = "";
+  private boolean atSubroutineStart = false;
+  private final List<String> body = new ArrayList<>();
+  private int ifCount = 0;
+  private int whileCount = 0;
+
+  // The operator waiting for its right operand, per open expression.
+  private final Deque<Optional<String>> pendingOperators = new ArrayDeque<>();
+  private final Deque<String> unaryOperators = new ArrayDeque<>();
+  private final Deque<Call> calls = new ArrayDeque<>();
+  private final Deque<Integer> ifs = new ArrayDeque<>();
+  private final Deque<Boolean> ifsWithElse = new ArrayDeque<>();
+  private final Deque<Integer> whiles = new ArrayDeque<>();
+  private String letTarget = "";
+  private boolean letArrayTarget = false;
+  private boolean returnsValue = false;
+
+  public VmCodeGenerator(Optional<StringConstantPool> stringPool) {
+    this.stringPool = stringPool;
+  }
+
+  public Optional<String> className() {
+    return symbols.className();
+  }
+
+  public ImmutableList<String> lines() {
+    return lines.build();
+  }
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {
+    symbols.beginNonTerminalVisit(nonTerminalText);
+    String parent = parent();
+    nonTerminals.add(nonTerminalText);
+    switch (nonTerminalText) {
+      case "subroutineDec":
+        atSubroutineStart = true;
+        body.clear();
+        ifCount = 0;
+        whileCount = 0;
+        break;
+      case "expression":
+        pendingOperators.push(Optional.absent());
+        if (parent.equals("expressionList")) {
+          calls.peek().argumentCount++;
+        } else if (parent.equals("returnStatement")) {
+          returnsValue = true;
+        }
+        break;
+      case "subroutineCall":
+        calls.push(new Call());
+        break;
+      case "ifStatement":
+        ifs.push(ifCount++);
+        ifsWithElse.push(false);
+        break;
+      case "whileStatement":
+        whiles.push(whileCount);
+        emit("label WHILE_EXP" + whileCount++);
+        break;
+      case "letStatement":
+        letArrayTarget = false;
+        break;
+      case "returnStatement":
+        returnsValue = false;
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {
+    symbols.endNonTerminalVisit(nonTerminalText);
+    nonTerminals.remove(nonTerminals.size() - 1);
+    String parent = parent();
+    switch (nonTerminalText) {
+      case "subroutineDec":
+        endSubroutine();
+        break;
+      case "expression":
+        pendingOperators.pop();
+        break;
+      case "term":
+        if (parent.equals("expression")) {
+          Optional<String> operator = pendingOperators.pop();
+          if (operator.isPresent()) {
+            emit(operator.get());
+          }
+          pendingOperators.push(Optional.absent());
+        }
+        break;
+      case "termWithPrecedingUnaryOp":
+        emit(unaryOperators.pop());
+        break;
+      case "arrayExpression":
+        emit("add");
+        if (parent.equals("letStatement")) {
+          letArrayTarget = true;
+        } else {
+          emit("pop pointer 1", "push that 0");
+        }
+        break;
+      case "subroutineCall":
+        Call call = calls.pop();
+        emit("call " + call.function + " " + call.argumentCount);
+        break;
+      case "doStatement":
+        emit("pop temp 0");
+        break;
+      case "letStatement":
+        if (letArrayTarget) {
+          emit("pop temp 0", "pop pointer 1", "push temp 0", "pop that 0");
+        } else {
+          emit("pop " + variable(letTarget));
+        }
+        break;
+      case "ifStatement":
+        int ifIndex = ifs.pop();
+        emit("label " + (ifsWithElse.pop() ? "IF_END" : "IF_FALSE") + ifIndex);
+        break;
+      case "whileStatement":
+        int whileIndex = whiles.pop();
+        emit("goto WHILE_EXP" + whileIndex, "label WHILE_END" + whileIndex);
+        break;
+      case "returnStatement":
+        if (!returnsValue) {
+          emit("push constant 0");
+        }
+        emit("return");
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void visitTerminal(JackToken token) {
+    symbols.visitTerminal(token);
+    String text = token.tokenText();
+    if (atSubroutineStart) {
+      atSubroutineStart = false;
+      subroutineKind = text;
+      return;
+    }
+    switch (parent()) {
+      case "subroutineName":
+        if (grandparent().equals("subroutineDec")) {
+          subroutineName = text;
+        } else {
+          calls.peek().identifiers.add(text);
+        }
+        break;
+      case "className":
+        if (grandparent().equals("subroutineCall")) {
+          calls.peek().identifiers.add(text);
+        }
+        break;
+      case "subroutineCall":
+        if (token.tokenType() == TokenType.IDENTIFIER) {
+          calls.peek().identifiers.add(text);
+        } else if (text.equals("(")) {
+          resolveCall(calls.peek());
+        }
+        break;
+      case "varName":
+        String user = grandparent();
+        if (user.equals("letStatement")) {
+          letTarget = text;
+        } else if (user.equals("term") || user.equals("arrayExpression")) {
+          emit("push " + variable(text));
+        }
+        break;
+      case "term":
+        term(token);
+        break;
+      case "termWithPrecedingUnaryOp":
+        if (UNARY_OPERATORS.containsKey(text)) {
+          unaryOperators.push(UNARY_OPERATORS.get(text));
+        }
+        break;
+      case "expression":
+        pendingOperators.pop();
+        pendingOperators.push(Optional.of(BINARY_OPERATORS.get(text)));
+        break;
+      case "ifStatement":
+        if (text.equals(")")) {
+          emit("not", "if-goto IF_FALSE" + ifs.peek());
+        } else if (text.equals("else")) {
+          ifsWithElse.pop();
+          ifsWithElse.push(true);
+          emit("goto IF_END" + ifs.peek(), "label IF_FALSE" + ifs.peek());
+        }
+        break;
+      case "whileStatement":
+        if (text.equals(")")) {
+          emit("not", "if-goto WHILE_END" + whiles.peek());
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void term(JackToken token) {
+    String text = token.tokenText();
+    switch (token.tokenType()) {
+      case INTEGER_CONSTANT:
+        emit("push constant " + text);
+        break;
+      case STRING_CONSTANT:
+        stringConstant(text);
+        break;
+      case KEYWORD:
+        if (text.equals("true")) {
+          emit("push constant 0", "not");
+        } else if (text.equals("this")) {
+          emit("push pointer 0");
+        } else {
+          emit("push constant 0");
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void stringConstant(String text) {
+    if (stringPool.isPresent()) {
+      emit("push constant " + stringPool.get().indexOf(text), StringConstantPool.GET_CALL);
+      return;
+    }
+    emit("push constant " + text.length(), "call String.new 1");
+    for (int i = 0; i < text.length(); i++) {
+      emit("push constant " + (int) text.charAt(i), "call String.appendChar 2");
+    }
+  }
+
+  // A call through a variable or of an unqualified subroutine is a method call, which gets the
+  // object as its first argument. Any other qualifier is a class name.
+  private void resolveCall(Call call) {
+    if (call.identifiers.size() == 1) {
+      emit("push pointer 0");
+      call.function = className().get() + "." + call.identifiers.get(0);
+      call.argumentCount = 1;
+      return;
+    }
+    String qualifier = call.identifiers.get(0);
+    SymbolTable symbolTable = symbols.symbolTable();
+    int handle = symbolTable.find(qualifier);
+    if (handle == SymbolTable.NOT_FOUND) {
+      call.function = qualifier + "." + call.identifiers.get(1);
+    } else {
+      emit("push " + variable(qualifier));
+      call.function = symbolTable.type(handle) + "." + call.identifiers.get(1);
+      call.argumentCount = 1;
+    }
+  }
+
+  private void endSubroutine() {
+    String function = className().get() + "." + subroutineName;
+    lines.add("function " + function + " " + symbols.symbolTable().varCount(SymbolKind.VAR));
+    if (subroutineKind.equals("constructor")) {
+      lines.add("push constant " + symbols.symbolTable().varCount(SymbolKind.FIELD));
+      lines.add("call Memory.alloc 1");
+      lines.add("pop pointer 0");
+    } else if (subroutineKind.equals("method")) {
+      lines.add("push argument 0");
+      lines.add("pop pointer 0");
+    }
+    if (stringPool.isPresent() && function.equals(StringConstantPool.PROGRAM_ENTRY)) {
+      lines.add(StringConstantPool.INIT_CALL);
+      lines.add("pop temp 0");
+    }
+    lines.addAll(body);
+  }
+
+  // The segment and index of a variable.
+  private String variable(String name) {
+    SymbolTable symbolTable = symbols.symbolTable();
+    int handle = symbolTable.find(name);
+    Preconditions.checkArgument(
+        handle != SymbolTable.NOT_FOUND, "Undefined variable %s in %s", name, subroutineName);
+    return symbolTable.kind(handle).segment() + " " + symbolTable.index(handle);
+  }
+
+  private String parent() {
+    return nonTerminals.isEmpty() ? "" : nonTerminals.get(nonTerminals.size() - 1);
+  }
+
+  private String grandparent() {
+    return nonTerminals.size() < 2 ? "" : nonTerminals.get(nonTerminals.size() - 2);
+  }
+
+  private void emit(String... commands) {
+    for (String command : commands) {
+      body.add(command);
+    }
+  }
+
+  private static final class Call {
+    final List<String> identifiers = new ArrayList<>(2);
+    String function = "";
+    int argumentCount = 0;
+  }
+}
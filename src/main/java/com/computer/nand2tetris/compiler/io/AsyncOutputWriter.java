@@ -0,0 +1,129 @@
+package com.computer.nand2tetris.compiler.io;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+// Moves output file writes off the compiling threads. The writers it hands out collect the
+// output in memory; committing them queues the content for a single I/O thread, which writes
+// everything queued so far in one batch (keeping only the last content of a file written more
+// than once) through the delegate factory. At most QUEUE_CAPACITY outputs wait in memory:
+// committing a writer blocks while the queue is full. Write failures are reported by checkErrors()
+// and close().
+public final class AsyncOutputWriter implements OutputWriterFactory, AutoCloseable {
+
+  private static final PendingOutput END_OF_OUTPUT = new PendingOutput(null, null);
+  private static final int QUEUE_CAPACITY = 64;
+
+  private final OutputWriterFactory delegate;
+  private final BlockingQueue<PendingOutput> pendingOutputs =
+      new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final List<Throwable> errors = new ArrayList<>();
+  private final Thread ioThread;
+
+  public AsyncOutputWriter(OutputWriterFactory delegate) {
+    this.delegate = delegate;
+    this.ioThread = new Thread(this::writePendingOutputs, "jack-output-writer");
+    ioThread.setDaemon(true);
+    ioThread.start();
+  }
+
+  @Override
+  public OutputFileWriter createWriter(String filePath) {
+    StringWriter content = new StringWriter();
+    return new OutputFileWriter(
+        content,
+        () -> Uninterruptibles.putUninterruptibly(
+            pendingOutputs, new PendingOutput(filePath, content.toString())));
+  }
+
+  public void checkErrors() {
+    synchronized (errors) {
+      if (errors.isEmpty()) {
+        return;
+      }
+      RuntimeException exception =
+          new RuntimeException("Writing output failed.", errors.get(0));
+      errors.stream().skip(1).forEach(exception::addSuppressed);
+      throw exception;
+    }
+  }
+
+  // Waits for all the queued outputs to be written.
+  @Override
+  public void close() {
+    Uninterruptibles.putUninterruptibly(pendingOutputs, END_OF_OUTPUT);
+    try {
+      ioThread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    checkErrors();
+  }
+
+  // Should the thread fail, it still takes the outputs until the end, so that closing writers
+  // doesn't block on a full queue.
+  private void writePendingOutputs() {
+    try {
+      writeUntilEnd();
+    } catch (Throwable t) {
+      recordError(t);
+      while (Uninterruptibles.takeUninterruptibly(pendingOutputs) != END_OF_OUTPUT) {
+        // dropped; the error is reported by close()
+      }
+    }
+  }
+
+  private void writeUntilEnd() {
+    List<PendingOutput> batch = new ArrayList<>();
+    while (true) {
+      batch.add(Uninterruptibles.takeUninterruptibly(pendingOutputs));
+      pendingOutputs.drainTo(batch);
+      boolean done = batch.remove(END_OF_OUTPUT);
+      coalesce(batch).forEach(this::write);
+      batch.clear();
+      if (done) {
+        return;
+      }
+    }
+  }
+
+  private static ImmutableList<PendingOutput> coalesce(List<PendingOutput> batch) {
+    Map<String, PendingOutput> lastOutputByPath = new LinkedHashMap<>();
+    batch.forEach(o -> lastOutputByPath.put(o.filePath, o));
+    return ImmutableList.copyOf(lastOutputByPath.values());
+  }
+
+  private void write(PendingOutput output) {
+    try (OutputFileWriter writer = delegate.createWriter(output.filePath)) {
+      writer.write(output.content);
+      writer.commit();
+    } catch (IOException | RuntimeException e) {
+      recordError(e);
+    }
+  }
+
+  private void recordError(Throwable error) {
+    synchronized (errors) {
+      errors.add(error);
+    }
+  }
+
+  private static final class PendingOutput {
+    final String filePath;
+    final String content;
+
+    PendingOutput(String filePath, String content) {
+      this.filePath = filePath;
+      this.content = content;
+    }
+  }
+}
@@ -11,19 +11,18 @@ public class CamelCaseConverter {
   }
 
   private static void convert(String text, int startIndex, StringBuilder builder) {
-    if (startIndex >= text.length()) {
-      return;
+    int index = startIndex;
+    while (index < text.length()) {
+      int delimIndex = findDelimPosition(text, index);
+      builder.append(text, index, delimIndex);
+
+      Optional<Character> upperCasedCharacter =
+          getCamelCaseCharacterForTwoLetterSubstring(text, delimIndex);
+      if (upperCasedCharacter.isPresent()) {
+        builder.append(upperCasedCharacter.get());
+      }
+      index = delimIndex + 2;
     }
-
-    int delimIndex = findDelimPosition(text, startIndex);
-    builder.append(text, startIndex, delimIndex);
-
-    Optional<Character> upperCasedCharacter =
-        getCamelCaseCharacterForTwoLetterSubstring(text, delimIndex);
-    if (upperCasedCharacter.isPresent()) {
-      builder.append(upperCasedCharacter.get());
-    }
-    convert(text, delimIndex + 2, builder);
   }
 
   private static Optional<Character> getCamelCaseCharacterForTwoLetterSubstring(
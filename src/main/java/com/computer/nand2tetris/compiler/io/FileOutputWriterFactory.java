@@ -0,0 +1,18 @@
+package com.computer.nand2tetris.compiler.io;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+
+// Output files whose content didn't change are left untouched (see
+// ReplaceIfChangedOutputStream).
+public class FileOutputWriterFactory implements OutputWriterFactory {
+
+  @Override
+  public OutputFileWriter createWriter(String filePath) throws IOException {
+    ReplaceIfChangedOutputStream stream = ReplaceIfChangedOutputStream.open(Paths.get(filePath));
+    return new OutputFileWriter(
+        new OutputStreamWriter(stream, Charset.defaultCharset()), stream::commit);
+  }
+}
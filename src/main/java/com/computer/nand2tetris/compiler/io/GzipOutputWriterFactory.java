@@ -0,0 +1,30 @@
+package com.computer.nand2tetris.compiler.io;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.zip.GZIPOutputStream;
+
+// Writes each output file compressed, to the given path with a ".gz" suffix appended. The output
+// is compressed as it is written, without buffering the uncompressed file. The gzip header
+// carries no timestamp, so an unchanged output compresses to the same bytes and is left untouched.
+public class GzipOutputWriterFactory implements OutputWriterFactory {
+
+  static final String GZIP_SUFFIX = ".gz";
+
+  @Override
+  public OutputFileWriter createWriter(String filePath) throws IOException {
+    ReplaceIfChangedOutputStream stream =
+        ReplaceIfChangedOutputStream.open(Paths.get(filePath + GZIP_SUFFIX));
+    GZIPOutputStream gzipStream;
+    try {
+      gzipStream = new GZIPOutputStream(stream);
+    } catch (IOException | RuntimeException e) {
+      stream.close();
+      throw e;
+    }
+    return new OutputFileWriter(
+        new OutputStreamWriter(gzipStream, Charset.defaultCharset()), stream::commit);
+  }
+}
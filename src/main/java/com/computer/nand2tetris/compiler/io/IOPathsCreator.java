@@ -1,6 +1,5 @@
 package com.computer.nand2tetris.compiler.io;
 
-import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.collect.MoreCollectors.onlyElement;
 
 import com.google.common.base.Preconditions;
@@ -9,60 +8,69 @@ import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Arrays;
+import java.util.function.Function;
 
 public class IOPathsCreator {
 
+  static final String OUTPUT_SUBDIR = "parseroutput";
   private static final String PARSER_OUTPUT_XML_SUFFIX = ".xml";
   private static final String TOKENIZER_OUTPUT_XML_SUFFIX = "T.xml";
   private static final String JACK_FILE_EXTENSION = ".jack";
-  private static final String OUTPUT_SUBDIR = "parseroutput";
 
   public static ImmutableList<IOPaths> createPaths(String[] args) {
-    String inputLocation = extractInputLocation(args);
-    File file = new File(inputLocation);
-    if (file.isDirectory()) {
-      return createPathsFromDirectory(file);
-    }
-
-    if (file.isFile() && hasJackExtension(file.getPath())) {
-      return ImmutableList.of(createPathsFromFile(file));
-    }
+    return createPathsSource(args).stream().collect(ImmutableList.toImmutableList());
+  }
 
-    throw new RuntimeException(
-        "Input location " + inputLocation + " is neither a .jack file nor a directory.");
+  public static IOPathsSource createPathsSource(String[] args) {
+    return createPaths(ImmutableList.of(extractInputLocation(args)), ImmutableList.of());
   }
 
-  private static ImmutableList<IOPaths> createPathsFromDirectory(File inputDirectory) {
-    return Arrays.stream(
-        inputDirectory.listFiles((dir, name) -> {
-          return hasJackExtension(name);
-        }))
-        .map(IOPathsCreator::createPathsFromFile)
-        .collect(toImmutableList());
+  public static IOPathsSource createPaths(
+      ImmutableList<String> inputLocations,
+      ImmutableList<String> includeGlobs) {
+    return createPaths(inputLocations, includeGlobs, true);
   }
 
+  // Without createOutputDirectories the output paths are computed but nothing is created.
+  public static IOPathsSource createPaths(
+      ImmutableList<String> inputLocations,
+      ImmutableList<String> includeGlobs,
+      boolean createOutputDirectories) {
+    return IOPathsSource.start(inputLocations, includeGlobs, createOutputDirectories);
+  }
 
-  private static boolean hasJackExtension(String path) {
+  static boolean hasJackExtension(String path) {
     return path.endsWith(JACK_FILE_EXTENSION);
   }
 
-  private static IOPaths createPathsFromFile(File inputFile) {
-    String parentPath = inputFile.getParent();
-    String outputSubdirectory = createSubdirectory(parentPath, OUTPUT_SUBDIR);
+  static boolean isOutputDirectory(Path directory) {
+    Path fileName = directory.getFileName();
+    return fileName != null && fileName.toString().equals(OUTPUT_SUBDIR);
+  }
+
+  static IOPaths createPathsFromFile(
+      File inputFile,
+      Function<String, String> outputSubdirectoryByParentPath) {
+    String outputSubdirectory =
+        outputSubdirectoryByParentPath.apply(inputFile.getAbsoluteFile().getParent());
     return IOPaths.create(
         inputFile.getAbsolutePath(),
         createXmlOutputPath(outputSubdirectory, generateTokenizerOutputBasename(inputFile)),
         createXmlOutputPath(outputSubdirectory, generateParserOutputBasename(inputFile)));
   }
 
-  private static String createSubdirectory(String parentPath, String outputSubdir) {
-    Path outputSubdirPath = Paths.get(parentPath, outputSubdir);
-    File file = new File(outputSubdirPath.toString());
+  static String createSubdirectory(String parentPath) {
+    String outputSubdirPath = subdirectoryPath(parentPath);
+    File file = new File(outputSubdirPath);
     if (!file.exists()) {
-      Preconditions.checkState(file.mkdir(), "output directory %s creation failed.",
-          file.getAbsolutePath());
+      Preconditions.checkState(file.mkdir() || file.isDirectory(),
+          "output directory %s creation failed.", file.getAbsolutePath());
     }
-    return outputSubdirPath.toString();
+    return outputSubdirPath;
+  }
+
+  static String subdirectoryPath(String parentPath) {
+    return Paths.get(parentPath, OUTPUT_SUBDIR).toString();
   }
 
   private static String generateTokenizerOutputBasename(File inputFile) {
@@ -0,0 +1,197 @@
+package com.computer.nand2tetris.compiler.io;
+
+import com.google.common.collect.ImmutableList;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+// Discovers .jack files under a number of input locations. Directories are walked recursively,
+// one walker per location, and the paths are handed out as soon as they are found so that the
+// caller can start working before the discovery has finished.
+public final class IOPathsSource implements Iterator<IOPaths> {
+
+  private static final IOPaths END_OF_DISCOVERY = IOPaths.create("", "", "");
+
+  private final BlockingQueue<IOPaths> discovered = new LinkedBlockingQueue<>();
+  private final ConcurrentMap<String, String> outputDirectoryByInputDirectory =
+      new ConcurrentHashMap<>();
+  // Globs without a '/' match file names, the others match paths relative to the walked
+  // directory.
+  private final ImmutableList<PathMatcher> nameMatchers;
+  private final ImmutableList<PathMatcher> relativePathMatchers;
+  private final AtomicInteger pendingWalks;
+  private final boolean createOutputDirectories;
+  private volatile Throwable discoveryFailure;
+  private IOPaths next;
+
+  private IOPathsSource(
+      ImmutableList<String> includeGlobs, int walkCount, boolean createOutputDirectories) {
+    this.nameMatchers = matchers(includeGlobs.stream().filter(g -> !g.contains("/")));
+    this.relativePathMatchers = matchers(includeGlobs.stream().filter(g -> g.contains("/")));
+    this.pendingWalks = new AtomicInteger(walkCount);
+    this.createOutputDirectories = createOutputDirectories;
+  }
+
+  private static ImmutableList<PathMatcher> matchers(Stream<String> globs) {
+    return globs
+        .map(g -> FileSystems.getDefault().getPathMatcher("glob:" + g))
+        .collect(ImmutableList.toImmutableList());
+  }
+
+  // The include globs only filter the files found in directories: a .jack file given as an input
+  // location is always included.
+  public static IOPathsSource start(
+      ImmutableList<String> inputLocations, ImmutableList<String> includeGlobs) {
+    return start(inputLocations, includeGlobs, true);
+  }
+
+  public static IOPathsSource start(
+      ImmutableList<String> inputLocations,
+      ImmutableList<String> includeGlobs,
+      boolean createOutputDirectories) {
+    ImmutableList<File> locations = inputLocations
+        .stream()
+        .map(IOPathsSource::checkInputLocation)
+        .collect(ImmutableList.toImmutableList());
+    IOPathsSource source = new IOPathsSource(includeGlobs, locations.size(), createOutputDirectories);
+    if (locations.isEmpty()) {
+      source.discovered.add(END_OF_DISCOVERY);
+      return source;
+    }
+
+    ExecutorService walkers = Executors.newFixedThreadPool(
+        Math.min(locations.size(), Runtime.getRuntime().availableProcessors()),
+        r -> {
+          Thread thread = new Thread(r, "jack-discovery");
+          thread.setDaemon(true);
+          return thread;
+        });
+    locations.forEach(l -> walkers.execute(() -> source.walk(l)));
+    walkers.shutdown();
+    return source;
+  }
+
+  private static File checkInputLocation(String inputLocation) {
+    File file = new File(inputLocation);
+    if (file.isDirectory() || (file.isFile() && IOPathsCreator.hasJackExtension(file.getPath()))) {
+      return file;
+    }
+    throw new RuntimeException(
+        "Input location " + inputLocation + " is neither a .jack file nor a directory.");
+  }
+
+  public Stream<IOPaths> stream() {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (next == null) {
+      next = take();
+    }
+    return next != END_OF_DISCOVERY;
+  }
+
+  @Override
+  public IOPaths next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    IOPaths paths = next;
+    next = null;
+    return paths;
+  }
+
+  private IOPaths take() {
+    IOPaths paths;
+    try {
+      paths = discovered.take();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    }
+    if (paths == END_OF_DISCOVERY) {
+      discovered.add(END_OF_DISCOVERY);
+      if (discoveryFailure != null) {
+        throw new RuntimeException(discoveryFailure);
+      }
+    }
+    return paths;
+  }
+
+  private void walk(File location) {
+    try {
+      if (location.isFile()) {
+        offer(location.toPath());
+      } else {
+        Path root = location.toPath();
+        Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+          @Override
+          public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+            return IOPathsCreator.isOutputDirectory(dir)
+                ? FileVisitResult.SKIP_SUBTREE : FileVisitResult.CONTINUE;
+          }
+
+          @Override
+          public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+            if (attrs.isRegularFile() && isIncluded(root.relativize(file))) {
+              offer(file);
+            }
+            return FileVisitResult.CONTINUE;
+          }
+        });
+      }
+    } catch (IOException | RuntimeException e) {
+      discoveryFailure = e;
+    } finally {
+      if (pendingWalks.decrementAndGet() == 0) {
+        discovered.add(END_OF_DISCOVERY);
+      }
+    }
+  }
+
+  private boolean isIncluded(Path relativePath) {
+    if (!IOPathsCreator.hasJackExtension(relativePath.toString())) {
+      return false;
+    }
+    if (nameMatchers.isEmpty() && relativePathMatchers.isEmpty()) {
+      return true;
+    }
+    Path name = relativePath.getFileName();
+    return nameMatchers.stream().anyMatch(m -> m.matches(name))
+        || relativePathMatchers.stream().anyMatch(m -> m.matches(relativePath));
+  }
+
+  private void offer(Path file) {
+    File inputFile = file.toFile();
+    discovered.add(IOPathsCreator.createPathsFromFile(inputFile, this::outputDirectoryFor));
+  }
+
+  private String outputDirectoryFor(String inputDirectory) {
+    return outputDirectoryByInputDirectory.computeIfAbsent(
+        inputDirectory,
+        createOutputDirectories
+            ? IOPathsCreator::createSubdirectory : IOPathsCreator::subdirectoryPath);
+  }
+}
@@ -0,0 +1,55 @@
+package com.computer.nand2tetris.compiler.io;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.zip.GZIPInputStream;
+
+// Reads an output file written either plainly or by GzipOutputWriterFactory, for comparing
+// outputs against expected ones. The path is the uncompressed output path, e.g. Main.xml; if
+// only Main.xml.gz exists, it is decompressed while reading. When both exist, one of them is
+// stale from a run with the other setting of --compress-output (unchanged outputs keep their
+// timestamps, so the newer one isn't necessarily the fresh one), and reading fails.
+public final class OutputFileReader {
+
+  private OutputFileReader() {}
+
+  public static BufferedReader open(String filePath) throws IOException {
+    if (filePath.endsWith(GzipOutputWriterFactory.GZIP_SUFFIX)) {
+      return openCompressed(filePath);
+    }
+    String compressedPath = filePath + GzipOutputWriterFactory.GZIP_SUFFIX;
+    if (new File(compressedPath).exists()) {
+      Preconditions.checkState(
+          !new File(filePath).exists(),
+          "Both %s and %s exist; delete the stale one.",
+          filePath,
+          compressedPath);
+      return openCompressed(compressedPath);
+    }
+    return new BufferedReader(new FileReader(filePath));
+  }
+
+  public static ImmutableList<String> readLines(String filePath) throws IOException {
+    try (BufferedReader reader = open(filePath)) {
+      return reader.lines().collect(ImmutableList.toImmutableList());
+    }
+  }
+
+  private static BufferedReader openCompressed(String filePath) throws IOException {
+    FileInputStream input = new FileInputStream(filePath);
+    try {
+      return new BufferedReader(
+          new InputStreamReader(new GZIPInputStream(input), Charset.defaultCharset()));
+    } catch (IOException | RuntimeException e) {
+      input.close();
+      throw e;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package com.computer.nand2tetris.compiler.io;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+// A writer of an output file that only takes the place of the existing file once committed.
+// Closing it without committing discards what was written and leaves the existing file alone,
+// so that a file whose compilation fails halfway doesn't replace a good output with a truncated
+// one.
+public final class OutputFileWriter extends BufferedWriter {
+
+  private final Runnable onCommit;
+
+  // onCommit marks the output to be published when out is closed.
+  OutputFileWriter(Writer out, Runnable onCommit) {
+    super(out);
+    this.onCommit = onCommit;
+  }
+
+  public void commit() throws IOException {
+    flush();
+    onCommit.run();
+    close();
+  }
+}
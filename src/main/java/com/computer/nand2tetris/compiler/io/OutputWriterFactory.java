@@ -0,0 +1,9 @@
+package com.computer.nand2tetris.compiler.io;
+
+import java.io.IOException;
+
+public interface OutputWriterFactory {
+
+  // The output is complete once the returned writer is committed.
+  OutputFileWriter createWriter(String filePath) throws IOException;
+}
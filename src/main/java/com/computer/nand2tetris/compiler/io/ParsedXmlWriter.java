@@ -2,10 +2,14 @@ package com.computer.nand2tetris.compiler.io;
 
 import com.computer.nand2tetris.compiler.JackElementVisitor;
 import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
 import java.io.BufferedWriter;
 import java.io.IOException;
+import java.util.EnumSet;
 
 public class ParsedXmlWriter implements JackElementVisitor {
 
@@ -17,6 +21,13 @@ public class ParsedXmlWriter implements JackElementVisitor {
           "\"", "&quot;",
           "&", "&amp;");
 
+  private static final ImmutableMap<TokenType, String> OPENING_TAGS =
+      Maps.immutableEnumMap(
+          Maps.toMap(EnumSet.allOf(TokenType.class), t -> createTag(t.toString())));
+  private static final ImmutableMap<TokenType, String> CLOSING_TAGS =
+      Maps.immutableEnumMap(
+          Maps.toMap(EnumSet.allOf(TokenType.class), t -> createClosingTag(t.toString())));
+
   private final BufferedWriter writer;
   private final ImmutableSet<String> nonTerminalsToParse;
   private StringBuilder indentation = new StringBuilder();
@@ -60,10 +71,31 @@ public class ParsedXmlWriter implements JackElementVisitor {
 
   @Override
   public void visitTerminal(JackToken token) {
-    String tokenTypeText = token.tokenType().toString();
-    indentAndWrite(createTag(tokenTypeText));
-    write(String.format(" %s ", getTokenText(token)));
-    write(createClosingTag(tokenTypeText));
+    indentAndWrite(OPENING_TAGS.get(token.tokenType()));
+    write(" ");
+    write(getTokenText(token));
+    write(" ");
+    write(CLOSING_TAGS.get(token.tokenType()));
+    writeNewline();
+  }
+
+  // Writes the token at the given index without creating a JackToken for it.
+  public void visitTerminal(TokenBuffer tokens, int index) {
+    TokenType tokenType = tokens.tokenType(index);
+    indentAndWrite(OPENING_TAGS.get(tokenType));
+    write(" ");
+    if (tokenType == TokenType.SYMBOL) {
+      String symbol = String.valueOf((char) tokens.intValue(index));
+      write(BROWSABLE_STRINGS.getOrDefault(symbol, symbol));
+    } else {
+      try {
+        tokens.writeText(index, writer);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    write(" ");
+    write(CLOSING_TAGS.get(tokenType));
     writeNewline();
   }
 
@@ -95,7 +127,6 @@ public class ParsedXmlWriter implements JackElementVisitor {
   private void writeNewline() {
     try {
       writer.newLine();
-      writer.flush();
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
@@ -0,0 +1,97 @@
+package com.computer.nand2tetris.compiler.io;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import com.google.common.hash.HashingOutputStream;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+// Writes to a temporary file next to the target while hashing the bytes. On close, if the
+// stream was committed, the target is atomically replaced by the temporary file only if their
+// contents differ; otherwise the temporary file is deleted and the target keeps its timestamp,
+// so that incremental builds downstream don't redo their work. Closing it without committing
+// leaves the target alone.
+final class ReplaceIfChangedOutputStream extends FilterOutputStream {
+
+  private static final HashFunction HASH_FUNCTION = Hashing.sha256();
+
+  private final Path target;
+  private final Path temporaryFile;
+  private final HashingOutputStream hashingStream;
+  private long length = 0;
+  private boolean committed = false;
+  private boolean closed = false;
+
+  private ReplaceIfChangedOutputStream(
+      Path target, Path temporaryFile, HashingOutputStream hashingStream) {
+    super(hashingStream);
+    this.target = target;
+    this.temporaryFile = temporaryFile;
+    this.hashingStream = hashingStream;
+  }
+
+  static ReplaceIfChangedOutputStream open(Path target) throws IOException {
+    Path temporaryFile = TemporaryFiles.createNextTo(target);
+    try {
+      return new ReplaceIfChangedOutputStream(
+          target,
+          temporaryFile,
+          new HashingOutputStream(
+              HASH_FUNCTION, new BufferedOutputStream(Files.newOutputStream(temporaryFile))));
+    } catch (IOException | RuntimeException e) {
+      Files.deleteIfExists(temporaryFile);
+      throw e;
+    }
+  }
+
+  @Override
+  public void write(int b) throws IOException {
+    out.write(b);
+    length++;
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) throws IOException {
+    out.write(b, off, len);
+    length += len;
+  }
+
+  void commit() {
+    committed = true;
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    boolean moved = false;
+    try {
+      super.close();
+      if (committed && !hasContent(target, length, hashingStream.hash())) {
+        Files.move(
+            temporaryFile,
+            target,
+            StandardCopyOption.ATOMIC_MOVE,
+            StandardCopyOption.REPLACE_EXISTING);
+        moved = true;
+      }
+    } finally {
+      if (!moved) {
+        Files.deleteIfExists(temporaryFile);
+      }
+    }
+  }
+
+  private static boolean hasContent(Path file, long length, HashCode hash) throws IOException {
+    return Files.isRegularFile(file)
+        && Files.size(file) == length
+        && com.google.common.io.Files.asByteSource(file.toFile()).hash(HASH_FUNCTION).equals(hash);
+  }
+}
@@ -0,0 +1,28 @@
+package com.computer.nand2tetris.compiler.io;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+
+public final class TemporaryFiles {
+
+  private TemporaryFiles() {}
+
+  // Creates an empty hidden file in the directory of target, to be moved over it once written.
+  // Unlike Files.createTempFile(), the file gets the default permissions, which it keeps when it
+  // replaces target.
+  public static Path createNextTo(Path target) throws IOException {
+    Path directory = target.toAbsolutePath().getParent();
+    while (true) {
+      Path file = directory.resolve(String.format(
+          ".%s.%x.tmp", target.getFileName(), ThreadLocalRandom.current().nextLong()));
+      try {
+        return Files.createFile(file);
+      } catch (FileAlreadyExistsException e) {
+        // try another name
+      }
+    }
+  }
+}
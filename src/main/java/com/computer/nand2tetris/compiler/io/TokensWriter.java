@@ -1,6 +1,7 @@
 package com.computer.nand2tetris.compiler.io;
 
 import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import java.io.BufferedWriter;
@@ -13,4 +14,13 @@ public class TokensWriter {
     tokens.stream().forEachOrdered(xmlWriter::visitTerminal);
     xmlWriter.endNonTerminalVisit("tokens");
   }
+
+  public void writeTokens(TokenBuffer tokens, BufferedWriter writer) {
+    ParsedXmlWriter xmlWriter = new ParsedXmlWriter(writer, ImmutableSet.of("tokens"));
+    xmlWriter.beginNonTerminalVisit("tokens");
+    for (int i = 0; i < tokens.size(); i++) {
+      xmlWriter.visitTerminal(tokens, i);
+    }
+    xmlWriter.endNonTerminalVisit("tokens");
+  }
 }
@@ -0,0 +1,14 @@
+package com.computer.nand2tetris.compiler.parser;
+
+import com.computer.nand2tetris.compiler.JackElementVisitor;
+
+// Supplies the events of class variable and subroutine declarations that don't need to be
+// parsed again, such as the unchanged declarations of an edited file.
+public interface DeclarationReplayer {
+
+  DeclarationReplayer NONE = (tokenIndex, visitor) -> 0;
+
+  // Called with the index of the first token of a declaration. Returns the number of tokens whose
+  // events were sent to the visitor, or 0 if the declaration has to be parsed.
+  int replay(int tokenIndex, JackElementVisitor visitor);
+}
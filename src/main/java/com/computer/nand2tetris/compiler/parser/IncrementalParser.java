@@ -0,0 +1,89 @@
+package com.computer.nand2tetris.compiler.parser;
+
+import com.computer.nand2tetris.compiler.Context;
+import com.computer.nand2tetris.compiler.JackElementVisitor;
+import com.computer.nand2tetris.compiler.MulticastVisitor;
+import com.computer.nand2tetris.compiler.TokenBuffer;
+import com.google.common.base.Optional;
+
+// Re-parses successive versions of one file. The tokens of the new version are compared with
+// the previous one from both ends; the class variable and subroutine declarations lying entirely
+// within the unchanged prefix or suffix are not parsed again and their recorded events are
+// replayed instead. The visitor receives the same events as from a full parse.
+public final class IncrementalParser {
+
+  private TokenBuffer previousTokens;
+  private Optional<Context> previousContext = Optional.absent();
+  private RecordingVisitor previousEvents;
+
+  public void parse(TokenBuffer tokens, Optional<Context> context, JackElementVisitor visitor) {
+    RecordingVisitor events = new RecordingVisitor();
+    new JackParser().parse(
+        tokens.cursor(),
+        context,
+        MulticastVisitor.of(visitor, events),
+        canReplay(context) ? createReplayer(tokens, visitor, events) : DeclarationReplayer.NONE);
+    previousTokens = tokens;
+    previousContext = context;
+    previousEvents = events;
+  }
+
+  // Class names change how identifiers are parsed, so nothing is replayed when they differ.
+  private boolean canReplay(Optional<Context> context) {
+    if (previousEvents == null || context.isPresent() != previousContext.isPresent()) {
+      return false;
+    }
+    return !context.isPresent()
+        || context.get().classNames().equals(previousContext.get().classNames());
+  }
+
+  // The replayed events go to the visitor directly and are copied in bulk into the new
+  // recording, rather than through the multicast visitor the parser was given.
+  private DeclarationReplayer createReplayer(
+      TokenBuffer tokens, JackElementVisitor visitor, RecordingVisitor recording) {
+    int prefixSize = commonPrefixSize(tokens);
+    int suffixStart = previousTokens.size() - commonSuffixSize(tokens, prefixSize);
+    int shift = tokens.size() - previousTokens.size();
+    RecordingVisitor events = previousEvents;
+
+    return (tokenIndex, parserVisitor) -> {
+      int declaration = -1;
+      if (tokenIndex < prefixSize) {
+        declaration = events.declarationStartingAt(tokenIndex);
+        if (declaration >= 0 && events.declarationTokenEnd(declaration) > prefixSize) {
+          declaration = -1;
+        }
+      } else if (tokenIndex - shift >= suffixStart) {
+        declaration = events.declarationStartingAt(tokenIndex - shift);
+      }
+      if (declaration < 0) {
+        return 0;
+      }
+      recording.appendDeclaration(events, declaration);
+      return events.replay(declaration, visitor);
+    };
+  }
+
+  private int commonPrefixSize(TokenBuffer tokens) {
+    int commonSize = Math.min(tokens.size(), previousTokens.size());
+    int prefixSize = 0;
+    while (prefixSize < commonSize && tokens.sameToken(prefixSize, previousTokens, prefixSize)) {
+      prefixSize++;
+    }
+    return prefixSize;
+  }
+
+  // The suffix doesn't overlap the prefix.
+  private int commonSuffixSize(TokenBuffer tokens, int prefixSize) {
+    int commonSize = Math.min(tokens.size(), previousTokens.size());
+    int suffixSize = 0;
+    while (prefixSize + suffixSize < commonSize
+        && tokens.sameToken(
+            tokens.size() - suffixSize - 1,
+            previousTokens,
+            previousTokens.size() - suffixSize - 1)) {
+      suffixSize++;
+    }
+    return suffixSize;
+  }
+}
@@ -4,7 +4,9 @@ import com.computer.nand2tetris.compiler.Context;
 import com.computer.nand2tetris.compiler.JackElementVisitor;
 import com.computer.nand2tetris.compiler.JackToken;
 import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.computer.nand2tetris.compiler.LookAhead;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 import com.google.common.base.Optional;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
@@ -79,7 +81,10 @@ public class JackParser {
 
   private TokensVisitor tokensVisitor;
 
-  private LookAheadStream<JackToken> tokens;
+  private LookAhead<JackToken> tokens;
+  // Set when parsing a TokenBuffer, to look at the lookahead without creating a JackToken.
+  private Optional<TokenBuffer.Cursor> cursor;
+  private DeclarationReplayer replayer = DeclarationReplayer.NONE;
 
   private ImmutableMap<String, Runnable> statementParserByLookahead =
       ImmutableMap.of(
@@ -114,8 +119,43 @@ public class JackParser {
       ImmutableList<JackToken> tokenList,
       Optional<Context> context,
       JackElementVisitor visitor) {
+    parse(new LookAheadStream<>(tokenList), context, visitor);
+  }
+
+  public void parse(
+      TokenBuffer tokenBuffer,
+      Optional<Context> context,
+      JackElementVisitor visitor) {
+    parse(tokenBuffer.cursor(), context, visitor);
+  }
+
+  // Parses from the given cursor, which is left at the offending token if the parse fails.
+  public void parse(
+      TokenBuffer.Cursor cursor,
+      Optional<Context> context,
+      JackElementVisitor visitor) {
+    parse(cursor, context, visitor, DeclarationReplayer.NONE);
+  }
+
+  // Like the above, but class variable and subroutine declarations whose events the replayer
+  // provides are skipped instead of parsed.
+  public void parse(
+      TokenBuffer.Cursor cursor,
+      Optional<Context> context,
+      JackElementVisitor visitor,
+      DeclarationReplayer replayer) {
+    this.replayer = replayer;
+    parse((LookAhead<JackToken>) cursor, context, visitor);
+  }
+
+  private void parse(
+      LookAhead<JackToken> tokens,
+      Optional<Context> context,
+      JackElementVisitor visitor) {
     this.context = context;
-    this.tokens = new LookAheadStream<>(tokenList);
+    this.tokens = tokens;
+    this.cursor = tokens instanceof TokenBuffer.Cursor
+        ? Optional.of((TokenBuffer.Cursor) tokens) : Optional.absent();
     this.tokensVisitor = TokensVisitor.create(tokens, visitor);
     parseClass();
     Preconditions.checkArgument(tokens.isEmpty(), "Unexpected trailing tokens: %s", tokens);
@@ -141,7 +181,9 @@ public class JackParser {
 
   private void parseClassVarDecs() {
     while (hasLookaheadTextIn(CLASS_VAR_DEC_LOOKAHEAD_TOKENS)) {
-      parseClassVarDec();
+      if (!replayDeclaration()) {
+        parseClassVarDec();
+      }
     }
   }
 
@@ -164,10 +206,21 @@ public class JackParser {
 
   private void parseSubroutineDecs() {
     while (hasLookaheadTextIn(SUBROUTINE_DEC_LOOK_AHEAD_TOKENS)) {
-      parseSubroutineDec();
+      if (!replayDeclaration()) {
+        parseSubroutineDec();
+      }
     }
   }
 
+  private boolean replayDeclaration() {
+    if (!cursor.isPresent()) {
+      return false;
+    }
+    int replayedTokens = replayer.replay(cursor.get().position(), tokensVisitor.visitor());
+    cursor.get().skip(replayedTokens);
+    return replayedTokens > 0;
+  }
+
   private void parseSubroutineDec() {
     tokensVisitor.nonTerminalParserOf("subroutineDec", "subroutine declaration")
         .parse(
@@ -518,7 +571,7 @@ public class JackParser {
   // Parsing terminals
 
   private void parseKeywordConstant() {
-    tokens.expect(KEYWORD_CONSTANT_TOKENS.toString());
+    expectToken(KEYWORD_CONSTANT_TOKENS);
     JackToken token = extractToken(TokenType.KEYWORD);
     Preconditions.checkArgument(KEYWORD_CONSTANT_TOKENS.contains(token.tokenText()));
     tokensVisitor.visitor().visitTerminal(token);
@@ -566,7 +619,7 @@ public class JackParser {
 
   private boolean hasLookaheadTextIn(ImmutableSet<String> expectedTokenTexts) {
     return !tokens.isEmpty() && expectedTokenTexts
-        .contains(getPeekedTokenExpecting(expectedTokenTexts.toString()).tokenText());
+        .contains(tokens.peek().get().tokenText());
   }
 
   private boolean hasLookaheadText(String expectedText) {
@@ -574,13 +627,19 @@ public class JackParser {
   }
 
   private boolean hasLookaheadType(TokenType tokenType) {
-    return !tokens.isEmpty() && getPeekedTokenExpecting(tokenType.toString()).tokenType()
-        .equals(tokenType);
+    return !tokens.isEmpty() && tokens.peek().get().tokenType().equals(tokenType);
   }
 
   private boolean hasClassNameLookahead() {
-    return !tokens.isEmpty() && context.isPresent() && context.get()
-        .isClassNameToken(getPeekedTokenExpecting("class name"));
+    if (tokens.isEmpty() || !context.isPresent()) {
+      return false;
+    }
+    if (cursor.isPresent()) {
+      TokenBuffer.Cursor lookahead = cursor.get();
+      return lookahead.tokenType() == TokenType.IDENTIFIER
+          && context.get().isClassName(lookahead.buffer(), lookahead.position());
+    }
+    return context.get().isClassNameToken(getPeekedTokenExpecting("class name"));
   }
 
   private void match(String tokenText) {
@@ -589,25 +648,31 @@ public class JackParser {
 
   private void matchOneOf(
       ImmutableSet<String> tokenTexts) {
-    tokens.expect(tokenTexts.toString());
+    expectToken(tokenTexts);
     JackToken token = tokens.extract().get();
     Preconditions.checkArgument(
         tokenTexts.contains(token.tokenText()),
-        "Expected %s but found %s.", tokenTexts, token.toString());
+        "Expected %s but found %s.", tokenTexts, token);
     tokensVisitor.visitor().visitTerminal(token);
   }
 
+  // Like LookAhead.expect(), but only formats the description when there are no more tokens.
+  private void expectToken(Object expectedTokens) {
+    Preconditions.checkArgument(
+        !tokens.isEmpty(), "No further tokens. Expected %s", expectedTokens);
+  }
+
   private JackToken getPeekedTokenExpecting(String expectedTokenDescription) {
     tokens.expect(expectedTokenDescription);
     return tokens.peek().get();
   }
 
   private JackToken extractToken(TokenType tokenType) {
-    tokens.expect(tokenType.toString());
+    expectToken(tokenType);
     JackToken token = tokens.extract().get();
     Preconditions.checkArgument(
         token.tokenType().equals(tokenType),
-        "Expected %s but found %s.", tokenType, token.toString());
+        "Expected %s but found %s.", tokenType, token);
     return token;
   }
 }
@@ -2,7 +2,7 @@ package com.computer.nand2tetris.compiler.parser;
 
 import com.computer.nand2tetris.compiler.JackElementVisitor;
 import com.computer.nand2tetris.compiler.JackToken;
-import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.LookAhead;
 
 final class NonTerminalVisitingParser {
 
@@ -17,7 +17,7 @@ final class NonTerminalVisitingParser {
   public static NonTerminalVisitingParser of(
       String tokenText,
       String tokenDescription,
-      LookAheadStream<JackToken> tokens,
+      LookAhead<JackToken> tokens,
       JackElementVisitor visitor) {
     tokens.expect(tokenDescription);
     visitor.beginNonTerminalVisit(tokenText);
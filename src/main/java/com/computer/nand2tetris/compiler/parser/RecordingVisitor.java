@@ -0,0 +1,123 @@
+package com.computer.nand2tetris.compiler.parser;
+
+import com.computer.nand2tetris.compiler.JackElementEvent;
+import com.computer.nand2tetris.compiler.JackElementVisitor;
+import com.computer.nand2tetris.compiler.JackToken;
+import com.google.common.collect.ImmutableSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Records the events of a parse, along with the token and event ranges of every class variable
+// and subroutine declaration, so that the events of a declaration can be replayed later. The
+// parser visits every token as a terminal in order, so the number of terminals seen so far is
+// the index of the next token.
+final class RecordingVisitor implements JackElementVisitor {
+
+  private static final ImmutableSet<String> DECLARATIONS =
+      ImmutableSet.of("classVarDec", "subroutineDec");
+  // Declarations are direct children of the class non terminal.
+  private static final int DECLARATION_DEPTH = 1;
+
+  private final List<JackElementEvent> eventKinds = new ArrayList<>();
+  // The non terminal text of begin and end events, the token of terminal events.
+  private final List<Object> eventPayloads = new ArrayList<>();
+  private int[] declarationTokenStarts = new int[16];
+  private int[] declarationTokenEnds = new int[16];
+  private int[] declarationEventStarts = new int[16];
+  private int[] declarationEventEnds = new int[16];
+  private int declarationCount = 0;
+  private int depth = 0;
+  private int tokenCount = 0;
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {
+    if (depth == DECLARATION_DEPTH && DECLARATIONS.contains(nonTerminalText)) {
+      beginDeclaration();
+    }
+    record(JackElementEvent.BEGIN_NON_TERMINAL, nonTerminalText);
+    depth++;
+  }
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {
+    depth--;
+    record(JackElementEvent.END_NON_TERMINAL, nonTerminalText);
+    if (depth == DECLARATION_DEPTH && DECLARATIONS.contains(nonTerminalText)) {
+      declarationTokenEnds[declarationCount] = tokenCount;
+      declarationEventEnds[declarationCount] = eventKinds.size();
+      declarationCount++;
+    }
+  }
+
+  @Override
+  public void visitTerminal(JackToken token) {
+    record(JackElementEvent.TERMINAL, token);
+    tokenCount++;
+  }
+
+  // Returns the number of the declaration that starts at the token index, or -1.
+  int declarationStartingAt(int tokenIndex) {
+    int declaration = Arrays.binarySearch(declarationTokenStarts, 0, declarationCount, tokenIndex);
+    return declaration >= 0 ? declaration : -1;
+  }
+
+  int declarationTokenEnd(int declaration) {
+    return declarationTokenEnds[declaration];
+  }
+
+  // Sends the events of the declaration to the visitor and returns its number of tokens.
+  int replay(int declaration, JackElementVisitor visitor) {
+    if (visitor.events().isEmpty()) {
+      return declarationTokenEnds[declaration] - declarationTokenStarts[declaration];
+    }
+    for (int i = declarationEventStarts[declaration]; i < declarationEventEnds[declaration]; i++) {
+      Object payload = eventPayloads.get(i);
+      switch (eventKinds.get(i)) {
+        case BEGIN_NON_TERMINAL:
+          visitor.beginNonTerminalVisit((String) payload);
+          break;
+        case END_NON_TERMINAL:
+          visitor.endNonTerminalVisit((String) payload);
+          break;
+        case TERMINAL:
+          visitor.visitTerminal((JackToken) payload);
+          break;
+        default:
+          throw new IllegalStateException("Unknown event " + eventKinds.get(i));
+      }
+    }
+    return declarationTokenEnds[declaration] - declarationTokenStarts[declaration];
+  }
+
+  // Records the events of a declaration of another recording as if they had been visited.
+  void appendDeclaration(RecordingVisitor from, int declaration) {
+    beginDeclaration();
+    int eventStart = from.declarationEventStarts[declaration];
+    int eventEnd = from.declarationEventEnds[declaration];
+    eventKinds.addAll(from.eventKinds.subList(eventStart, eventEnd));
+    eventPayloads.addAll(from.eventPayloads.subList(eventStart, eventEnd));
+    tokenCount +=
+        from.declarationTokenEnds[declaration] - from.declarationTokenStarts[declaration];
+    declarationTokenEnds[declarationCount] = tokenCount;
+    declarationEventEnds[declarationCount] = eventKinds.size();
+    declarationCount++;
+  }
+
+  private void beginDeclaration() {
+    if (declarationCount == declarationTokenStarts.length) {
+      int capacity = declarationCount * 2;
+      declarationTokenStarts = Arrays.copyOf(declarationTokenStarts, capacity);
+      declarationTokenEnds = Arrays.copyOf(declarationTokenEnds, capacity);
+      declarationEventStarts = Arrays.copyOf(declarationEventStarts, capacity);
+      declarationEventEnds = Arrays.copyOf(declarationEventEnds, capacity);
+    }
+    declarationTokenStarts[declarationCount] = tokenCount;
+    declarationEventStarts[declarationCount] = eventKinds.size();
+  }
+
+  private void record(JackElementEvent kind, Object payload) {
+    eventKinds.add(kind);
+    eventPayloads.add(payload);
+  }
+}
@@ -2,17 +2,17 @@ package com.computer.nand2tetris.compiler.parser;
 
 import com.computer.nand2tetris.compiler.JackElementVisitor;
 import com.computer.nand2tetris.compiler.JackToken;
-import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.LookAhead;
 import com.google.auto.value.AutoValue;
 
 @AutoValue
 abstract class TokensVisitor {
 
-  static TokensVisitor create(LookAheadStream<JackToken> tokens, JackElementVisitor visitor) {
+  static TokensVisitor create(LookAhead<JackToken> tokens, JackElementVisitor visitor) {
     return new AutoValue_TokensVisitor(tokens, visitor);
   }
 
-  abstract LookAheadStream<JackToken> tokens();
+  abstract LookAhead<JackToken> tokens();
   abstract JackElementVisitor visitor();
 
   NonTerminalVisitingParser nonTerminalParserOf(String tokenText, String tokenDescription) {
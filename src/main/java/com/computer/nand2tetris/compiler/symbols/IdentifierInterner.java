@@ -0,0 +1,116 @@
+package com.computer.nand2tetris.compiler.symbols;
+
+import com.computer.nand2tetris.compiler.TokenBuffer;
+import java.util.Arrays;
+
+// Maps identifier names to dense int ids using an open addressing table, so that symbol tables
+// can key their entries by primitive ints.
+public final class IdentifierInterner {
+
+  public static final int NO_ID = -1;
+
+  private static final int INITIAL_CAPACITY = 64;
+
+  private String[] names = new String[INITIAL_CAPACITY];
+  private int[] hashes = new int[INITIAL_CAPACITY];
+  private int[] slots = emptySlots(INITIAL_CAPACITY * 2);
+  private int size = 0;
+
+  private static int[] emptySlots(int capacity) {
+    int[] slots = new int[capacity];
+    Arrays.fill(slots, NO_ID);
+    return slots;
+  }
+
+  private static int mix(int hash) {
+    int h = hash * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  public int intern(String name) {
+    int hash = name.hashCode();
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+      int id = slots[slot];
+      if (id == NO_ID) {
+        return insert(slot, name, hash);
+      }
+      if (hashes[id] == hash && names[id].equals(name)) {
+        return id;
+      }
+    }
+  }
+
+  // Interns the identifier at the given index, reusing the hash computed by the tokenizer. A
+  // String is only created the first time an identifier is seen.
+  public int intern(TokenBuffer tokens, int index) {
+    int hash = tokens.intValue(index);
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+      int id = slots[slot];
+      if (id == NO_ID) {
+        return insert(slot, tokens.text(index), hash);
+      }
+      if (hashes[id] == hash && tokens.textEquals(index, names[id])) {
+        return id;
+      }
+    }
+  }
+
+  public int lookup(String name) {
+    int hash = name.hashCode();
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+      int id = slots[slot];
+      if (id == NO_ID || (hashes[id] == hash && names[id].equals(name))) {
+        return id;
+      }
+    }
+  }
+
+  public int lookup(TokenBuffer tokens, int index) {
+    int hash = tokens.intValue(index);
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask; ; slot = (slot + 1) & mask) {
+      int id = slots[slot];
+      if (id == NO_ID || (hashes[id] == hash && tokens.textEquals(index, names[id]))) {
+        return id;
+      }
+    }
+  }
+
+  public String name(int id) {
+    return names[id];
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private int insert(int slot, String name, int hash) {
+    if (size == names.length) {
+      names = Arrays.copyOf(names, size * 2);
+      hashes = Arrays.copyOf(hashes, size * 2);
+    }
+    int id = size++;
+    names[id] = name;
+    hashes[id] = hash;
+    slots[slot] = id;
+    if (size * 2 > slots.length) {
+      rehash(slots.length * 2);
+    }
+    return id;
+  }
+
+  private void rehash(int capacity) {
+    slots = emptySlots(capacity);
+    int mask = capacity - 1;
+    for (int id = 0; id < size; id++) {
+      int slot = mix(hashes[id]) & mask;
+      while (slots[slot] != NO_ID) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = id;
+    }
+  }
+}
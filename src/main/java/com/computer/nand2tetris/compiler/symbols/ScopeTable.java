@@ -0,0 +1,119 @@
+package com.computer.nand2tetris.compiler.symbols;
+
+import java.util.Arrays;
+
+// A single scope of a symbol table. Entries are keyed by interned name id and stored in
+// parallel primitive arrays with linear probing. A slot belongs to the table only if it was
+// written in the current generation, so clear() just starts a new generation.
+final class ScopeTable {
+
+  static final int NOT_FOUND = -1;
+
+  private static final int INITIAL_CAPACITY = 32;
+
+  private int[] nameIds;
+  private int[] generations;
+  private byte[] kinds;
+  private int[] typeIds;
+  private int[] indexes;
+
+  private int generation = 1;
+  private int size = 0;
+  private final int[] countsByKind = new int[SymbolKind.values().length];
+
+  ScopeTable() {
+    allocate(INITIAL_CAPACITY);
+  }
+
+  private void allocate(int capacity) {
+    nameIds = new int[capacity];
+    generations = new int[capacity];
+    kinds = new byte[capacity];
+    typeIds = new int[capacity];
+    indexes = new int[capacity];
+  }
+
+  private static int mix(int id) {
+    int h = id * 0x9E3779B9;
+    return h ^ (h >>> 16);
+  }
+
+  void clear() {
+    generation++;
+    size = 0;
+    Arrays.fill(countsByKind, 0);
+  }
+
+  // The name must not be defined in this scope yet.
+  int define(int nameId, int typeId, SymbolKind kind) {
+    if ((size + 1) * 2 > nameIds.length) {
+      grow();
+    }
+    int index = countsByKind[kind.ordinal()]++;
+    put(nameId, typeId, (byte) kind.ordinal(), index);
+    return index;
+  }
+
+  int find(int nameId) {
+    int mask = nameIds.length - 1;
+    for (int slot = mix(nameId) & mask; generations[slot] == generation;
+        slot = (slot + 1) & mask) {
+      if (nameIds[slot] == nameId) {
+        return slot;
+      }
+    }
+    return NOT_FOUND;
+  }
+
+  SymbolKind kind(int slot) {
+    return SymbolKind.values()[kinds[slot]];
+  }
+
+  int typeId(int slot) {
+    return typeIds[slot];
+  }
+
+  int index(int slot) {
+    return indexes[slot];
+  }
+
+  int count(SymbolKind kind) {
+    return countsByKind[kind.ordinal()];
+  }
+
+  int size() {
+    return size;
+  }
+
+  private void put(int nameId, int typeId, byte kind, int index) {
+    int mask = nameIds.length - 1;
+    int slot = mix(nameId) & mask;
+    while (generations[slot] == generation) {
+      slot = (slot + 1) & mask;
+    }
+    nameIds[slot] = nameId;
+    generations[slot] = generation;
+    kinds[slot] = kind;
+    typeIds[slot] = typeId;
+    indexes[slot] = index;
+    size++;
+  }
+
+  private void grow() {
+    int[] oldNameIds = nameIds;
+    int[] oldGenerations = generations;
+    byte[] oldKinds = kinds;
+    int[] oldTypeIds = typeIds;
+    int[] oldIndexes = indexes;
+    int oldGeneration = generation;
+
+    allocate(oldNameIds.length * 2);
+    generation = 1;
+    size = 0;
+    for (int slot = 0; slot < oldNameIds.length; slot++) {
+      if (oldGenerations[slot] == oldGeneration) {
+        put(oldNameIds[slot], oldTypeIds[slot], oldKinds[slot], oldIndexes[slot]);
+      }
+    }
+  }
+}
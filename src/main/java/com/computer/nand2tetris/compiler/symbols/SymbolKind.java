@@ -0,0 +1,18 @@
+package com.computer.nand2tetris.compiler.symbols;
+
+public enum SymbolKind {
+  STATIC("static"),
+  FIELD("this"),
+  ARGUMENT("argument"),
+  VAR("local");
+
+  private final String segment;
+
+  SymbolKind(String segment) {
+    this.segment = segment;
+  }
+
+  public String segment() {
+    return segment;
+  }
+}
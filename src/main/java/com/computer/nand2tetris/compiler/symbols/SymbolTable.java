@@ -0,0 +1,99 @@
+package com.computer.nand2tetris.compiler.symbols;
+
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+
+// Class and subroutine scoped symbol table. Lookups return a handle that encodes the scope and
+// the slot of the symbol, from which its kind, type and index can be read without allocation.
+public final class SymbolTable {
+
+  public static final int NOT_FOUND = -1;
+
+  private static final int SUBROUTINE_SCOPE_BIT = 1 << 30;
+
+  private final IdentifierInterner interner;
+  private final ScopeTable classScope = new ScopeTable();
+  private final ScopeTable subroutineScope = new ScopeTable();
+
+  public SymbolTable() {
+    this(new IdentifierInterner());
+  }
+
+  public SymbolTable(IdentifierInterner interner) {
+    this.interner = interner;
+  }
+
+  public IdentifierInterner interner() {
+    return interner;
+  }
+
+  public void startClass() {
+    classScope.clear();
+    subroutineScope.clear();
+  }
+
+  public void startSubroutine() {
+    subroutineScope.clear();
+  }
+
+  public int define(String name, String type, SymbolKind kind) {
+    int nameId = interner.intern(name);
+    ScopeTable scope = scopeOf(kind);
+    Preconditions.checkArgument(
+        scope.find(nameId) == ScopeTable.NOT_FOUND,
+        "Symbol %s is already defined in this scope.",
+        name);
+    return scope.define(nameId, interner.intern(type), kind);
+  }
+
+  public int varCount(SymbolKind kind) {
+    return scopeOf(kind).count(kind);
+  }
+
+  public int find(String name) {
+    int nameId = interner.lookup(name);
+    return nameId == IdentifierInterner.NO_ID ? NOT_FOUND : find(nameId);
+  }
+
+  public int find(int nameId) {
+    int slot = subroutineScope.find(nameId);
+    if (slot != ScopeTable.NOT_FOUND) {
+      return slot | SUBROUTINE_SCOPE_BIT;
+    }
+    return classScope.find(nameId);
+  }
+
+  public SymbolKind kind(int handle) {
+    return scopeOf(handle).kind(slotOf(handle));
+  }
+
+  public String type(int handle) {
+    return interner.name(scopeOf(handle).typeId(slotOf(handle)));
+  }
+
+  public int index(int handle) {
+    return scopeOf(handle).index(slotOf(handle));
+  }
+
+  public Optional<SymbolKind> kindOf(String name) {
+    int handle = find(name);
+    return handle == NOT_FOUND ? Optional.absent() : Optional.of(kind(handle));
+  }
+
+  public Optional<String> typeOf(String name) {
+    int handle = find(name);
+    return handle == NOT_FOUND ? Optional.absent() : Optional.of(type(handle));
+  }
+
+  private ScopeTable scopeOf(SymbolKind kind) {
+    return kind == SymbolKind.STATIC || kind == SymbolKind.FIELD ? classScope : subroutineScope;
+  }
+
+  private ScopeTable scopeOf(int handle) {
+    return (handle & SUBROUTINE_SCOPE_BIT) != 0 ? subroutineScope : classScope;
+  }
+
+  private static int slotOf(int handle) {
+    return handle & ~SUBROUTINE_SCOPE_BIT;
+  }
+}
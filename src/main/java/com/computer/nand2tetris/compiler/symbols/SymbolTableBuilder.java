@@ -0,0 +1,122 @@
+package com.computer.nand2tetris.compiler.symbols;
+
+import com.computer.nand2tetris.compiler.JackElementVisitor;
+import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
+import com.google.common.base.Optional;
+
+// Populates a SymbolTable from the classVarDec, varDec and parameterList events of JackParser.
+// The subroutine scope is reset at the beginning of each subroutineDec.
+public class SymbolTableBuilder implements JackElementVisitor {
+
+  private final SymbolTable symbolTable;
+
+  private Optional<String> className = Optional.absent();
+  private Optional<SymbolKind> declarationKind = Optional.absent();
+  private Optional<String> declarationType = Optional.absent();
+  private boolean inClassName = false;
+  private boolean inType = false;
+  private boolean inVarName = false;
+  private boolean atSubroutineStart = false;
+
+  public SymbolTableBuilder(SymbolTable symbolTable) {
+    this.symbolTable = symbolTable;
+  }
+
+  public SymbolTable symbolTable() {
+    return symbolTable;
+  }
+
+  public Optional<String> className() {
+    return className;
+  }
+
+  @Override
+  public void beginNonTerminalVisit(String nonTerminalText) {
+    switch (nonTerminalText) {
+      case "class":
+        symbolTable.startClass();
+        className = Optional.absent();
+        break;
+      case "className":
+        inClassName = !className.isPresent();
+        break;
+      case "subroutineDec":
+        symbolTable.startSubroutine();
+        atSubroutineStart = true;
+        break;
+      case "classVarDec":
+        declarationType = Optional.absent();
+        break;
+      case "varDec":
+        declarationKind = Optional.of(SymbolKind.VAR);
+        declarationType = Optional.absent();
+        break;
+      case "parameterList":
+        declarationKind = Optional.of(SymbolKind.ARGUMENT);
+        break;
+      case "typedVarName":
+        declarationType = Optional.absent();
+        break;
+      case "type":
+        inType = declarationKind.isPresent();
+        break;
+      case "varName":
+        inVarName = declarationKind.isPresent();
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void endNonTerminalVisit(String nonTerminalText) {
+    switch (nonTerminalText) {
+      case "className":
+        inClassName = false;
+        break;
+      case "classVarDec":
+      case "varDec":
+      case "parameterList":
+        declarationKind = Optional.absent();
+        break;
+      case "type":
+        inType = false;
+        break;
+      case "varName":
+        inVarName = false;
+        break;
+      default:
+        break;
+    }
+  }
+
+  @Override
+  public void visitTerminal(JackToken token) {
+    if (atSubroutineStart) {
+      atSubroutineStart = false;
+      if (token.tokenText().equals("method") && className.isPresent()) {
+        symbolTable.define("this", className.get(), SymbolKind.ARGUMENT);
+      }
+      return;
+    }
+
+    if (inClassName) {
+      className = Optional.of(token.tokenText());
+    } else if (inType) {
+      declarationType = Optional.of(token.tokenText());
+    } else if (inVarName && declarationType.isPresent()) {
+      symbolTable.define(token.tokenText(), declarationType.get(), declarationKind.get());
+    } else if (isClassVarDecKeyword(token)) {
+      declarationKind = Optional.of(
+          token.tokenText().equals("static") ? SymbolKind.STATIC : SymbolKind.FIELD);
+    }
+  }
+
+  private boolean isClassVarDecKeyword(JackToken token) {
+    return !declarationKind.isPresent()
+        && !declarationType.isPresent()
+        && token.tokenType().equals(TokenType.KEYWORD)
+        && (token.tokenText().equals("static") || token.tokenText().equals("field"));
+  }
+}
@@ -0,0 +1,94 @@
+package com.computer.nand2tetris.compiler.tokenizer;
+
+// Word-at-a-time scanning of whitespace and identifier runs. Four chars are packed into the
+// 16-bit lanes of a long and all of them are classified with a few arithmetic operations. As
+// long as every lane holds an ASCII character, adding (0x8000 - c) to a lane sets its top bit
+// exactly when the lane is >= c, without carrying into the neighbouring lane. On the first
+// non-ASCII character the scan falls back to the Character predicates.
+final class AsciiScanner {
+
+  private static final int LANE_BITS = 16;
+  private static final int LANES = 4;
+  private static final long LOW_BITS = 0x0001_0001_0001_0001L;
+  private static final long HIGH_BITS = 0x8000_8000_8000_8000L;
+  private static final long NON_ASCII_BITS = 0xFF80_FF80_FF80_FF80L;
+
+  private AsciiScanner() {}
+
+  // Returns the index of the first non whitespace character at or after start.
+  static int skipWhitespace(String line, int start) {
+    int index = start;
+    while (index + LANES <= line.length()) {
+      long word = word(line, index);
+      if ((word & NON_ASCII_BITS) != 0) {
+        break;
+      }
+      long mismatches = ~whitespaceLanes(word) & HIGH_BITS;
+      if (mismatches != 0) {
+        return index + firstLane(mismatches);
+      }
+      index += LANES;
+    }
+    while (index < line.length() && Character.isWhitespace(line.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  // Returns the index of the first character at or after start that can't be part of an
+  // identifier.
+  static int skipIdentifierCharacters(String line, int start) {
+    int index = start;
+    while (index + LANES <= line.length()) {
+      long word = word(line, index);
+      if ((word & NON_ASCII_BITS) != 0) {
+        break;
+      }
+      long mismatches = ~identifierLanes(word) & HIGH_BITS;
+      if (mismatches != 0) {
+        return index + firstLane(mismatches);
+      }
+      index += LANES;
+    }
+    while (index < line.length() && isIdentifierCharacter(line.charAt(index))) {
+      index++;
+    }
+    return index;
+  }
+
+  static boolean isIdentifierCharacter(char c) {
+    return Character.isLetter(c) || Character.isDigit(c) || c == '_';
+  }
+
+  private static long word(String line, int index) {
+    return line.charAt(index)
+        | (long) line.charAt(index + 1) << LANE_BITS
+        | (long) line.charAt(index + 2) << (2 * LANE_BITS)
+        | (long) line.charAt(index + 3) << (3 * LANE_BITS);
+  }
+
+  // Character.isWhitespace() is true for '\t' to '\r' and for the separators 0x1C to ' '.
+  private static long whitespaceLanes(long word) {
+    return between(word, 0x09, 0x0D) | between(word, 0x1C, 0x20);
+  }
+
+  private static long identifierLanes(long word) {
+    return between(word, 'a', 'z')
+        | between(word, 'A', 'Z')
+        | between(word, '0', '9')
+        | between(word, '_', '_');
+  }
+
+  // Sets the top bit of every lane holding a value in [low, high].
+  private static long between(long word, int low, int high) {
+    return atLeast(word, low) & ~atLeast(word, high + 1);
+  }
+
+  private static long atLeast(long word, int value) {
+    return (word + (0x8000 - value) * LOW_BITS) & HIGH_BITS;
+  }
+
+  private static int firstLane(long laneBits) {
+    return Long.numberOfTrailingZeros(laneBits) / LANE_BITS;
+  }
+}
@@ -1,28 +1,18 @@
 package com.computer.nand2tetris.compiler.tokenizer;
 
+import com.computer.nand2tetris.compiler.JackKeywords;
 import com.computer.nand2tetris.compiler.JackToken;
 import com.computer.nand2tetris.compiler.JackToken.TokenType;
 import com.computer.nand2tetris.compiler.LookAheadStream;
-import com.google.common.collect.ImmutableSet;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 
 class IdentifierOrKeywordTokenExtractor implements JackTokenExtractor {
 
-  private static final ImmutableSet<String> KEYWORDS = ImmutableSet.of(
-      "class", "constructor", "function",
-      "method", "field", "static", "var",
-      "int", "char", "boolean", "void", "true",
-      "false", "null", "this", "let", "do",
-      "if", "else", "while", "return");
-
-  private static boolean isKeyword(String tokenText) {
-    return KEYWORDS.contains(tokenText);
-  }
-
-  private static boolean isLeadingIdentifierCharacter(Character lookAhead) {
-    return Character.isLetter(lookAhead) || lookAhead.charValue() == '_';
+  private static boolean isLeadingIdentifierCharacter(char lookAhead) {
+    return Character.isLetter(lookAhead) || lookAhead == '_';
   }
 
-  private static boolean isIdentifierCharacter(Character lookAhead) {
+  private static boolean isIdentifierCharacter(char lookAhead) {
     return isLeadingIdentifierCharacter(lookAhead) || Character.isDigit(lookAhead);
   }
 
@@ -35,9 +25,31 @@ class IdentifierOrKeywordTokenExtractor implements JackTokenExtractor {
       builder.append(lookAheadStream.extract().get());
     }
 
-    String tokenText = builder.toString();
-    TokenType tokenType = isKeyword(tokenText) ? TokenType.KEYWORD : TokenType.IDENTIFIER;
-    return JackToken.create(tokenType, tokenText);
+    int keywordId = JackKeywords.lookup(builder, 0, builder.length());
+    return keywordId == JackKeywords.NOT_A_KEYWORD
+        ? JackToken.create(TokenType.IDENTIFIER, builder.toString())
+        : JackKeywords.token(keywordId);
+  }
+
+  @Override
+  public int scanToken(String line, int start, int lineOffset, TokenBuffer.Builder tokens) {
+    int end = AsciiScanner.skipIdentifierCharacters(line, start);
+    int keywordId = JackKeywords.lookup(line, start, end);
+    if (keywordId == JackKeywords.NOT_A_KEYWORD) {
+      tokens.add(TokenType.IDENTIFIER, lineOffset + start, end - start, hash(line, start, end));
+    } else {
+      tokens.add(TokenType.KEYWORD, lineOffset + start, end - start, keywordId);
+    }
+    return end;
+  }
+
+  // Same as String.hashCode of the identifier, so that it can be used in place of it.
+  private static int hash(String line, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + line.charAt(i);
+    }
+    return hash;
   }
 
   @Override
@@ -0,0 +1,98 @@
+package com.computer.nand2tetris.compiler.tokenizer;
+
+import com.computer.nand2tetris.compiler.TokenBuffer;
+import com.google.common.collect.ImmutableList;
+import java.util.List;
+
+// Tokenizes successive versions of one file. The lines common to the start of the previous and
+// the new version are not lexed again: lexing resumes at the first changed line, from the
+// comment state recorded for it, and stops again at the first line of the unchanged end of the
+// file that is reached in the same comment state as before. The tokens of the lines that are not
+// lexed are copied from the previous buffer, so the result is the same as tokenizeToBuffer().
+public final class IncrementalTokenizer {
+
+  private LexedFile previous = new LexedFile(ImmutableList.of());
+
+  public TokenBuffer tokenize(List<String> lines) {
+    LexedFile current = new LexedFile(ImmutableList.copyOf(lines));
+    int lineCount = current.lines.size();
+    int commonSize = Math.min(lineCount, previous.lines.size());
+    int prefixSize = 0;
+    while (prefixSize < commonSize
+        && current.lines.get(prefixSize).equals(previous.lines.get(prefixSize))) {
+      prefixSize++;
+    }
+    int suffixSize = 0;
+    while (prefixSize + suffixSize < commonSize
+        && current.lines.get(lineCount - suffixSize - 1)
+            .equals(previous.lines.get(previous.lines.size() - suffixSize - 1))) {
+      suffixSize++;
+    }
+    int shift = lineCount - previous.lines.size();
+
+    TokenBuffer.Builder builder = TokenBuffer.builder();
+    current.copyLines(0, previous, 0, prefixSize, builder);
+    JackPreprocessor preprocessor = new JackPreprocessor(previous.inCommentAtLine[prefixSize]);
+    for (int line = prefixSize; line < lineCount; line++) {
+      int previousLine = line - shift;
+      if (line >= lineCount - suffixSize
+          && previous.inCommentAtLine[previousLine] == preprocessor.inComment()) {
+        // The rest of the file lexes as before.
+        current.copyLines(line, previous, previousLine, lineCount - line, builder);
+        preprocessor = new JackPreprocessor(previous.inCommentAtLine[previous.lines.size()]);
+        break;
+      }
+      current.lexLine(line, preprocessor, builder);
+    }
+    preprocessor.done();
+    current.lineOffsets[lineCount] = builder.sourceLength();
+    current.firstTokenOfLine[lineCount] = builder.size();
+    current.tokens = builder.build();
+    previous = current;
+    return current.tokens;
+  }
+
+  // The preprocessed lines and tokens of one version of the file, and for every line the comment
+  // state at its start, its offset in the token buffer source and its first token.
+  private static final class LexedFile {
+    final ImmutableList<String> lines;
+    final String[] preprocessedLines;
+    // These have one more entry, for the end of the file.
+    final boolean[] inCommentAtLine;
+    final int[] lineOffsets;
+    final int[] firstTokenOfLine;
+    TokenBuffer tokens = TokenBuffer.builder().build();
+
+    LexedFile(ImmutableList<String> lines) {
+      this.lines = lines;
+      this.preprocessedLines = new String[lines.size()];
+      this.inCommentAtLine = new boolean[lines.size() + 1];
+      this.lineOffsets = new int[lines.size() + 1];
+      this.firstTokenOfLine = new int[lines.size() + 1];
+    }
+
+    void lexLine(int line, JackPreprocessor preprocessor, TokenBuffer.Builder builder) {
+      inCommentAtLine[line] = preprocessor.inComment();
+      preprocessedLines[line] = preprocessor.preprocess(lines.get(line));
+      firstTokenOfLine[line] = builder.size();
+      lineOffsets[line] = JackTokenizer.scanLine(preprocessedLines[line], builder);
+    }
+
+    void copyLines(
+        int line, LexedFile from, int fromLine, int count, TokenBuffer.Builder builder) {
+      int tokenShift = builder.size() - from.firstTokenOfLine[fromLine];
+      int sourceShift = builder.appendFrom(
+          from.tokens,
+          from.lineOffsets[fromLine],
+          from.lineOffsets[fromLine + count],
+          from.firstTokenOfLine[fromLine],
+          from.firstTokenOfLine[fromLine + count]);
+      for (int i = 0; i < count; i++) {
+        inCommentAtLine[line + i] = from.inCommentAtLine[fromLine + i];
+        preprocessedLines[line + i] = from.preprocessedLines[fromLine + i];
+        lineOffsets[line + i] = from.lineOffsets[fromLine + i] + sourceShift;
+        firstTokenOfLine[line + i] = from.firstTokenOfLine[fromLine + i] + tokenShift;
+      }
+    }
+  }
+}
@@ -1,7 +1,9 @@
 package com.computer.nand2tetris.compiler.tokenizer;
 
 import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 
 class IntegerConstantTokenExtractor implements JackTokenExtractor {
 
@@ -18,6 +20,18 @@ class IntegerConstantTokenExtractor implements JackTokenExtractor {
     return JackToken.create(JackToken.TokenType.INTEGER_CONSTANT, Integer.toString(value));
   }
 
+  @Override
+  public int scanToken(String line, int start, int lineOffset, TokenBuffer.Builder tokens) {
+    int value = 0;
+    int end = start;
+    while (end < line.length() && Character.isDigit(line.charAt(end))) {
+      value = value * 10 + Character.digit(line.charAt(end), 10);
+      end++;
+    }
+    tokens.add(TokenType.INTEGER_CONSTANT, lineOffset + start, end - start, value);
+    return end;
+  }
+
   @Override
   public boolean matches(Character lookAhead) {
     return Character.isDigit(lookAhead);
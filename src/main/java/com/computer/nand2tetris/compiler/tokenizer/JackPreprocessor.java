@@ -8,53 +8,73 @@ class JackPreprocessor {
   private static final String SINGLE_LINE_COMMENT_DELIM = "//";
   private static final String MULTI_LINE_COMMENT_BEGIN_DELIM = "/*";
   private static final String MULTI_LINE_COMMENT_END_DELIM = "*/";
-  private boolean inComment = false;
+  private boolean inComment;
+
+  JackPreprocessor() {
+    this(false);
+  }
+
+  // Starts in the middle of a multiline comment if inComment is set.
+  JackPreprocessor(boolean inComment) {
+    this.inComment = inComment;
+  }
+
+  // Whether the next line starts inside a multiline comment.
+  boolean inComment() {
+    return inComment;
+  }
 
   String preprocess(String line) {
+    if (!inComment && line.indexOf('/') < 0) {
+      return line;
+    }
     StringBuilder builder = new StringBuilder();
     stripComment(line, 0, builder);
     return builder.toString();
   }
 
-  private void stripComment(String line, int index, StringBuilder builder) {
-    // initialize state as if we are in the middle of a multiline comment that was begun in a
-    // previous line.
-    Optional<Integer> commentBeginIndex = Optional.of(index);
-    String commentBeginDelim = "";
-
-    if (!inComment) {
-      commentBeginIndex = findCommentBeginIndex(line, index);
-      if (!commentBeginIndex.isPresent()) {
-        // append the entire substring from position index.
-        builder.append(line, index, line.length());
-        return;
+  private void stripComment(String line, int startIndex, StringBuilder builder) {
+    int index = startIndex;
+    while (true) {
+      // initialize state as if we are in the middle of a multiline comment that was begun in a
+      // previous line.
+      Optional<Integer> commentBeginIndex = Optional.of(index);
+      String commentBeginDelim = "";
+
+      if (!inComment) {
+        commentBeginIndex = findCommentBeginIndex(line, index);
+        if (!commentBeginIndex.isPresent()) {
+          // append the entire substring from position index.
+          builder.append(line, index, line.length());
+          return;
+        }
+
+        // append all characters until the beginning of the comment.
+        builder.append(line, index, commentBeginIndex.get());
+
+        commentBeginDelim = getCommentBeginDelim(line, commentBeginIndex.get());
+        if (SINGLE_LINE_COMMENT_DELIM.equals(commentBeginDelim)) {
+          // Ignore the rest of the line as we found a '//'
+          return;
+        }
+
+        inComment = true;  // a new multiline comment has begun.
       }
 
-      // append all characters until the beginning of the comment.
-      builder.append(line, index, commentBeginIndex.get());
-
-      commentBeginDelim = getCommentBeginDelim(line, commentBeginIndex.get());
-      if (SINGLE_LINE_COMMENT_DELIM.equals(commentBeginDelim)) {
-        // Ignore the rest of the line as we found a '//'
+      Optional<Integer> commentEndIndex =
+          findCommentDelimIndex(
+              line,
+              commentBeginIndex.get() + commentBeginDelim.length(),
+              MULTI_LINE_COMMENT_END_DELIM);
+      if (!commentEndIndex.isPresent()) {
+        // Skip the rest of the line as no closing multiline comment delimiter was found.
         return;
       }
 
-      inComment = true;  // a new multiline comment has begun.
+      inComment = false;
+      // go on stripping the substring following the closing multiline comment delimiter.
+      index = commentEndIndex.get() + MULTI_LINE_COMMENT_END_DELIM.length();
     }
-
-    Optional<Integer> commentEndIndex =
-        findCommentDelimIndex(
-            line,
-            commentBeginIndex.get() + commentBeginDelim.length(),
-            MULTI_LINE_COMMENT_END_DELIM);
-    if (!commentEndIndex.isPresent()) {
-      // Skip the rest of the line as no closing multiline comment delimiter was found.
-      return;
-    }
-
-    inComment = false;
-    // recursively strip the substring following the closing multiline comment delimiter.
-    stripComment(line, commentEndIndex.get() + MULTI_LINE_COMMENT_END_DELIM.length(), builder);
   }
 
   private Optional<Integer> findCommentDelimIndex(String line, int index, String delim) {
@@ -67,24 +87,18 @@ class JackPreprocessor {
         : MULTI_LINE_COMMENT_BEGIN_DELIM;
   }
 
+  // Both comment delimiters begin with a '/', so a single pass over the slashes of the line finds
+  // the earliest of them.
   private Optional<Integer> findCommentBeginIndex(String line, int index) {
-    Optional<Integer> singleLineCommentIndex = findCommentDelimIndex(line, index,
-        SINGLE_LINE_COMMENT_DELIM);
-    Optional<Integer> multiLineCommentIndex = findCommentDelimIndex(line, index,
-        MULTI_LINE_COMMENT_BEGIN_DELIM);
-
-    if (!singleLineCommentIndex.isPresent() && !multiLineCommentIndex.isPresent()) {
-      return Optional.absent();
-    }
-
-    if (singleLineCommentIndex.isPresent()) {
-      return
-          multiLineCommentIndex.isPresent() ?
-              Optional.of(Math.min(singleLineCommentIndex.get(), multiLineCommentIndex.get()))
-              : singleLineCommentIndex;
+    for (int slashIndex = line.indexOf('/', index);
+        slashIndex >= 0 && slashIndex + 1 < line.length();
+        slashIndex = line.indexOf('/', slashIndex + 1)) {
+      char follower = line.charAt(slashIndex + 1);
+      if (follower == '/' || follower == '*') {
+        return Optional.of(slashIndex);
+      }
     }
-
-    return multiLineCommentIndex;
+    return Optional.absent();
   }
 
   public void done() {
@@ -2,10 +2,15 @@ package com.computer.nand2tetris.compiler.tokenizer;
 
 import com.computer.nand2tetris.compiler.JackToken;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 
 interface JackTokenExtractor {
 
   JackToken extractToken(LookAheadStream<Character> lookAheadStream);
 
   boolean matches(Character lookAhead);
+
+  // Scans the token beginning at line[start] and adds it to the buffer (unless it is
+  // whitespace), with offsets relative to lineOffset. Returns the index following the token.
+  int scanToken(String line, int start, int lineOffset, TokenBuffer.Builder tokens);
 }
@@ -7,12 +7,17 @@ import com.computer.nand2tetris.compiler.ErrorMessageGenerator;
 import com.computer.nand2tetris.compiler.JackToken;
 import com.computer.nand2tetris.compiler.JackToken.TokenType;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import java.io.BufferedReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
 import java.util.stream.Stream;
 
 public class JackTokenizer {
@@ -25,6 +30,8 @@ public class JackTokenizer {
           new StringConstantTokenExtractor(),
           new IdentifierOrKeywordTokenExtractor());
 
+  private static final JackTokenExtractor[] ASCII_TOKEN_EXTRACTORS = createAsciiTokenExtractors();
+
   public ImmutableList<JackToken> tokenize(BufferedReader reader) {
     JackPreprocessor preprocessor = new JackPreprocessor();
     ImmutableList<JackToken> tokens =
@@ -37,6 +44,134 @@ public class JackTokenizer {
     return tokens;
   }
 
+  // Lazily tokenizes the reader into one TokenBuffer per line, for the callers that only look at
+  // the first tokens. No JackToken is created, and the unterminated comment check at end of
+  // input is not performed.
+  public Stream<TokenBuffer> lineTokenStream(BufferedReader reader) {
+    JackPreprocessor preprocessor = new JackPreprocessor();
+    return reader
+        .lines()
+        .map(preprocessor::preprocess)
+        .map(l -> {
+          TokenBuffer.Builder tokens = TokenBuffer.builder();
+          scanLine(l, tokens);
+          return tokens.build();
+        });
+  }
+
+  // Tokenizes the reader into a TokenBuffer whose source is the preprocessed text, one line per
+  // input line.
+  public TokenBuffer tokenizeToBuffer(BufferedReader reader) {
+    JackPreprocessor preprocessor = new JackPreprocessor();
+    TokenBuffer.Builder tokens = TokenBuffer.builder();
+    reader
+        .lines()
+        .map(preprocessor::preprocess)
+        .forEachOrdered(l -> scanLine(l, tokens));
+    preprocessor.done();
+    return tokens.build();
+  }
+
+  // Tokenizes the lines in chunks of chunkLines lines on the executor. The comment state at the
+  // start of a chunk is only known once the chunks before it are tokenized, so every chunk but
+  // the first is tokenized speculatively for both states, and the chunks are stitched together
+  // following the state each one ends in. The result, and the first error if any, are the same
+  // as those of tokenizeToBuffer().
+  public TokenBuffer tokenizeToBuffer(List<String> lines, int chunkLines, Executor executor) {
+    Preconditions.checkArgument(chunkLines > 0, "Chunks need at least one line.");
+    List<List<String>> chunks = Lists.partition(lines, chunkLines);
+    if (chunks.size() <= 1) {
+      TokenBuffer.Builder tokens = TokenBuffer.builder();
+      JackPreprocessor preprocessor = new JackPreprocessor();
+      for (String line : lines) {
+        scanLine(preprocessor.preprocess(line), tokens);
+      }
+      preprocessor.done();
+      return tokens.build();
+    }
+    List<CompletableFuture<ChunkTokens>> outsideComment = new ArrayList<>();
+    List<CompletableFuture<ChunkTokens>> insideComment = new ArrayList<>();
+    for (int chunk = 0; chunk < chunks.size(); chunk++) {
+      List<String> chunkSource = chunks.get(chunk);
+      outsideComment.add(CompletableFuture.supplyAsync(
+          () -> ChunkTokens.tokenize(chunkSource, false), executor));
+      insideComment.add(chunk == 0
+          ? outsideComment.get(0)
+          : CompletableFuture.supplyAsync(() -> ChunkTokens.tokenize(chunkSource, true), executor));
+    }
+
+    TokenBuffer.Builder tokens = TokenBuffer.builder();
+    boolean inComment = false;
+    for (int chunk = 0; chunk < chunks.size(); chunk++) {
+      ChunkTokens chunkTokens = (inComment ? insideComment : outsideComment).get(chunk).join();
+      if (chunkTokens.failure != null) {
+        throw chunkTokens.failure;
+      }
+      tokens.appendAll(chunkTokens.tokens);
+      inComment = chunkTokens.endsInComment;
+    }
+    new JackPreprocessor(inComment).done();
+    return tokens.build();
+  }
+
+  // Returns the offset of the line in the source of the buffer.
+  static int scanLine(String line, TokenBuffer.Builder tokens) {
+    int lineOffset = tokens.appendSource(line);
+    tokens.appendSource("\n");
+    int position = 0;
+    while (position < line.length()) {
+      position = getTokenExtractor(line.charAt(position))
+          .scanToken(line, position, lineOffset, tokens);
+    }
+    return lineOffset;
+  }
+
+  // The tokens of a chunk of lines given the comment state at its start, or the error met while
+  // tokenizing it, which only matters if that state turns out to be the actual one.
+  private static final class ChunkTokens {
+    final TokenBuffer tokens;
+    final boolean endsInComment;
+    final RuntimeException failure;
+
+    private ChunkTokens(TokenBuffer tokens, boolean endsInComment, RuntimeException failure) {
+      this.tokens = tokens;
+      this.endsInComment = endsInComment;
+      this.failure = failure;
+    }
+
+    static ChunkTokens tokenize(List<String> lines, boolean inComment) {
+      JackPreprocessor preprocessor = new JackPreprocessor(inComment);
+      TokenBuffer.Builder tokens = TokenBuffer.builder();
+      try {
+        for (String line : lines) {
+          scanLine(preprocessor.preprocess(line), tokens);
+        }
+      } catch (RuntimeException e) {
+        return new ChunkTokens(null, false, e);
+      }
+      return new ChunkTokens(tokens.build(), preprocessor.inComment(), null);
+    }
+  }
+
+  private static JackTokenExtractor getTokenExtractor(char lookAhead) {
+    JackTokenExtractor tokenExtractor =
+        lookAhead < ASCII_TOKEN_EXTRACTORS.length ? ASCII_TOKEN_EXTRACTORS[lookAhead] : null;
+    return tokenExtractor != null ? tokenExtractor : getOnlyTokenExtractorForLookAhead(lookAhead);
+  }
+
+  // The extractor for each ASCII character that has exactly one, so that the extractor doesn't
+  // have to be searched for on every token.
+  private static JackTokenExtractor[] createAsciiTokenExtractors() {
+    JackTokenExtractor[] tokenExtractors = new JackTokenExtractor[128];
+    for (char c = 0; c < tokenExtractors.length; c++) {
+      char lookAhead = c;
+      ImmutableSet<JackTokenExtractor> matching = TOKEN_EXTRACTORS.stream()
+          .filter(x -> x.matches(lookAhead)).collect(toImmutableSet());
+      tokenExtractors[c] = matching.size() == 1 ? Iterables.getOnlyElement(matching) : null;
+    }
+    return tokenExtractors;
+  }
+
   private static Stream<JackToken> tokenizeLine(String line) {
     LookAheadStream<Character> lookAheadStream = new LookAheadStream(Lists.charactersOf(line));
     ImmutableList.Builder<JackToken> builder = ImmutableList.builder();
@@ -1,7 +1,9 @@
 package com.computer.nand2tetris.compiler.tokenizer;
 
 import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 import com.google.common.base.Preconditions;
 
 class StringConstantTokenExtractor implements JackTokenExtractor {
@@ -21,6 +23,15 @@ class StringConstantTokenExtractor implements JackTokenExtractor {
     return JackToken.create(JackToken.TokenType.STRING_CONSTANT, builder.toString());
   }
 
+  @Override
+  public int scanToken(String line, int start, int lineOffset, TokenBuffer.Builder tokens) {
+    int closingQuoteIndex = line.indexOf('"', start + 1);
+    Preconditions.checkArgument(closingQuoteIndex >= 0, "Double quote expected.");
+    tokens.add(
+        TokenType.STRING_CONSTANT, lineOffset + start + 1, closingQuoteIndex - start - 1, 0);
+    return closingQuoteIndex + 1;
+  }
+
   private static boolean isDoubleQuote(Character c) {
     return c == '"';
   }
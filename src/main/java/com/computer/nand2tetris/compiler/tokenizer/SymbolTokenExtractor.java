@@ -1,7 +1,9 @@
 package com.computer.nand2tetris.compiler.tokenizer;
 
 import com.computer.nand2tetris.compiler.JackToken;
+import com.computer.nand2tetris.compiler.JackToken.TokenType;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 import com.google.common.collect.ImmutableSet;
 
 class SymbolTokenExtractor implements JackTokenExtractor {
@@ -17,6 +19,12 @@ class SymbolTokenExtractor implements JackTokenExtractor {
     return JackToken.create(JackToken.TokenType.SYMBOL, symbol.toString());
   }
 
+  @Override
+  public int scanToken(String line, int start, int lineOffset, TokenBuffer.Builder tokens) {
+    tokens.add(TokenType.SYMBOL, lineOffset + start, 1, line.charAt(start));
+    return start + 1;
+  }
+
   @Override
   public boolean matches(Character lookAhead) {
     return VALID_SYMBOLS.contains(lookAhead);
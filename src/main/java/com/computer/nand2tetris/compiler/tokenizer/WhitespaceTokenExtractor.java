@@ -3,6 +3,7 @@ package com.computer.nand2tetris.compiler.tokenizer;
 import com.computer.nand2tetris.compiler.JackToken;
 import com.computer.nand2tetris.compiler.JackToken.TokenType;
 import com.computer.nand2tetris.compiler.LookAheadStream;
+import com.computer.nand2tetris.compiler.TokenBuffer;
 
 public class WhitespaceTokenExtractor implements JackTokenExtractor {
 
@@ -14,6 +15,11 @@ public class WhitespaceTokenExtractor implements JackTokenExtractor {
     return JackToken.create(TokenType.WHITESPACE, "");
   }
 
+  @Override
+  public int scanToken(String line, int start, int lineOffset, TokenBuffer.Builder tokens) {
+    return AsciiScanner.skipWhitespace(line, start);
+  }
+
   @Override
   public boolean matches(Character lookAhead) {
     return Character.isWhitespace(lookAhead);
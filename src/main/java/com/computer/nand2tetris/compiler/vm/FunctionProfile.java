@@ -0,0 +1,30 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import com.google.auto.value.AutoValue;
+
+// What one function cost over a run. The inclusive counts add those of the functions it called;
+// recursive activations are only counted once, when the outermost one returns. The OS functions
+// are native, so they have cycles but no instructions.
+@AutoValue
+public abstract class FunctionProfile {
+
+  static FunctionProfile create(
+      String name,
+      boolean isNative,
+      long calls,
+      long instructions,
+      long cycles,
+      long inclusiveInstructions,
+      long inclusiveCycles) {
+    return new AutoValue_FunctionProfile(
+        name, isNative, calls, instructions, cycles, inclusiveInstructions, inclusiveCycles);
+  }
+
+  public abstract String name();
+  public abstract boolean isNative();
+  public abstract long calls();
+  public abstract long instructions();
+  public abstract long cycles();
+  public abstract long inclusiveInstructions();
+  public abstract long inclusiveCycles();
+}
@@ -0,0 +1,421 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import static com.computer.nand2tetris.compiler.vm.VmProgram.ADD;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.AND;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.CALL;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.END_OF_FUNCTION;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.EQ;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.FUNCTION;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.GOTO;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.GT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.IF_GOTO;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.LT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.NEG;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.NOT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.OR;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_ARGUMENT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_FIXED;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_LOCAL;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_THAT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_THIS;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_ARGUMENT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_CONSTANT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_FIXED;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_LOCAL;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_THAT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_THIS;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.RETURN;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.SUB;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+// Translates a linked VmProgram to Hack assembly, with three optimizations over the usual
+// command by command expansion:
+//
+// - The top of the stack is kept in D whenever possible ("cached"), so that a push followed by
+//   an operation or a pop doesn't go through memory. RAM[SP] then points where the top would be
+//   stored. The stack is flushed to memory before every label, jump and call, so the state is
+//   always known when code is reached by a jump.
+// - call and return jump to shared trampolines instead of being expanded inline: one for return
+//   and one for call per argument count, so that a call site only passes the callee and its
+//   return address. The trampoline for return leaves the returned value in D, already cached for
+//   the caller.
+// - Common sequences are fused: a constant added to or subtracted from the top of the stack, a
+//   0 or 1 stored to a fixed address, an array read right after THAT is set, and a comparison
+//   (possibly negated) followed by if-goto, which becomes a single conditional jump.
+//
+// Like most translators, gt and lt compare by subtracting, which overflows when the operands
+// are more than 32767 apart.
+public final class HackTranslator {
+
+  private static final int FRAME_SIZE = 5;
+  private static final int MAX_INLINE_OFFSET = 6;
+  private static final int MAX_INLINE_LOCALS = 8;
+  private static final String CALL_TRAMPOLINE = "$CALL.";
+  private static final String RETURN_TRAMPOLINE = "$RETURN";
+  private static final String HALT = "$HALT";
+
+  private final VmProgram program;
+  private final boolean[] jumpTargets;
+  private final ImmutableList.Builder<String> lines = ImmutableList.builder();
+  private final SortedSet<Integer> argumentCounts = new TreeSet<>();
+  private boolean cached = false;
+  private int labelCount = 0;
+
+  private HackTranslator(VmProgram program) {
+    this.program = program;
+    this.jumpTargets = new boolean[program.size()];
+    for (int pc = 0; pc < program.size(); pc++) {
+      int opcode = program.opcodes[pc];
+      if (opcode == GOTO || opcode == IF_GOTO) {
+        jumpTargets[program.firstArguments[pc]] = true;
+      }
+    }
+  }
+
+  // Every called function has to be defined: the OS is translated from its .vm files along with
+  // the program. Execution starts at Sys.init, or at Main.main when there is no Sys.init.
+  public static ImmutableList<String> translate(VmProgram program) {
+    HackTranslator translator = new HackTranslator(program);
+    translator.translate();
+    return translator.lines.build();
+  }
+
+  // The number of instructions of the assembly, i.e. its size in ROM.
+  public static int romSize(ImmutableList<String> assembly) {
+    int size = 0;
+    for (String line : assembly) {
+      if (!line.startsWith("(")) {
+        size++;
+      }
+    }
+    return size;
+  }
+
+  private void translate() {
+    for (int function = 0; function < program.functionNames().size(); function++) {
+      Preconditions.checkArgument(
+          program.isDefined(function),
+          "Function %s is not defined",
+          program.functionNames().get(function));
+    }
+    bootstrap();
+    int pc = 0;
+    while (pc < program.size()) {
+      if (jumpTargets[pc]) {
+        flush();
+        label(jumpLabel(pc));
+      }
+      pc = translate(pc);
+    }
+    for (int argumentCount : argumentCounts) {
+      callTrampoline(argumentCount);
+    }
+    returnTrampoline();
+  }
+
+  private void bootstrap() {
+    int entry = program.functionIndex("Sys.init");
+    if (entry < 0) {
+      entry = program.functionIndex("Main.main");
+    }
+    Preconditions.checkArgument(entry >= 0, "The program has neither Sys.init nor Main.main.");
+    emit("@256", "D=A", "@SP", "M=D");
+    // Returns to a loop that jumps to itself.
+    call(entry, 0, HALT);
+    emit("@" + HALT, "0;JMP");
+    cached = false;
+  }
+
+  // Returns the index of the next command to translate.
+  private int translate(int pc) {
+    int opcode = program.opcodes[pc];
+    int argument = program.firstArguments[pc];
+    switch (opcode) {
+      case PUSH_CONSTANT:
+        return pushConstant(pc, argument);
+      case PUSH_LOCAL:
+        pushIndirect("LCL", argument);
+        return pc + 1;
+      case PUSH_ARGUMENT:
+        pushIndirect("ARG", argument);
+        return pc + 1;
+      case PUSH_THIS:
+        pushIndirect("THIS", argument);
+        return pc + 1;
+      case PUSH_THAT:
+        pushIndirect("THAT", argument);
+        return pc + 1;
+      case PUSH_FIXED:
+        flush();
+        emit("@" + argument, "D=M");
+        cached = true;
+        return pc + 1;
+      case POP_LOCAL:
+        popIndirect("LCL", argument);
+        return pc + 1;
+      case POP_ARGUMENT:
+        popIndirect("ARG", argument);
+        return pc + 1;
+      case POP_THIS:
+        popIndirect("THIS", argument);
+        return pc + 1;
+      case POP_THAT:
+        popIndirect("THAT", argument);
+        return pc + 1;
+      case POP_FIXED:
+        load();
+        if (argument == VmInterpreter.THAT && isNext(pc, 1, PUSH_THAT, 0)) {
+          // Reading an array element: THAT is the address in D.
+          emit("@THAT", "M=D", "A=D", "D=M");
+          return pc + 2;
+        }
+        emit("@" + argument, "M=D");
+        cached = false;
+        return pc + 1;
+      case ADD:
+        binary("D=D+M");
+        return pc + 1;
+      case SUB:
+        binary("D=M-D");
+        return pc + 1;
+      case AND:
+        binary("D=D&M");
+        return pc + 1;
+      case OR:
+        binary("D=D|M");
+        return pc + 1;
+      case NEG:
+        load();
+        emit("D=-D");
+        return pc + 1;
+      case NOT:
+        load();
+        emit("D=!D");
+        return pc + 1;
+      case EQ:
+        return compare(pc, "JEQ", "JNE");
+      case GT:
+        return compare(pc, "JGT", "JLE");
+      case LT:
+        return compare(pc, "JLT", "JGE");
+      case GOTO:
+        flush();
+        emit("@" + jumpLabel(argument), "0;JMP");
+        return pc + 1;
+      case IF_GOTO:
+        load();
+        emit("@" + jumpLabel(argument), "D;JNE");
+        cached = false;
+        return pc + 1;
+      case CALL:
+        flush();
+        call(argument, program.secondArguments[pc], "$RET" + labelCount++);
+        return pc + 1;
+      case FUNCTION:
+        flush();
+        label(program.functionNames().get(argument));
+        pushZeros(program.secondArguments[pc]);
+        return pc + 1;
+      case RETURN:
+        load();
+        emit("@" + RETURN_TRAMPOLINE, "0;JMP");
+        cached = false;
+        return pc + 1;
+      case END_OF_FUNCTION:
+        // Running past the end of a function stops the program.
+        flush();
+        emit("@" + HALT, "0;JMP");
+        return pc + 1;
+      default:
+        throw new IllegalStateException("Unknown opcode " + opcode);
+    }
+  }
+
+  private int pushConstant(int pc, int value) {
+    if (isNext(pc, 1, ADD) || isNext(pc, 1, SUB)) {
+      load();
+      boolean add = program.opcodes[pc + 1] == ADD;
+      if (value == 1) {
+        emit(add ? "D=D+1" : "D=D-1");
+      } else if (value != 0) {
+        emit("@" + value, add ? "D=D+A" : "D=D-A");
+      }
+      return pc + 2;
+    }
+    if ((value == 0 || value == 1) && isNext(pc, 1, POP_FIXED)) {
+      // D is left alone, so the cache state doesn't change.
+      emit("@" + program.firstArguments[pc + 1], "M=" + value);
+      return pc + 2;
+    }
+    flush();
+    if (value == 0 || value == 1) {
+      emit("D=" + value);
+    } else {
+      emit("@" + value, "D=A");
+    }
+    cached = true;
+    return pc + 1;
+  }
+
+  private void pushIndirect(String base, int offset) {
+    flush();
+    if (offset == 0) {
+      emit("@" + base, "A=M", "D=M");
+    } else if (offset == 1) {
+      emit("@" + base, "A=M+1", "D=M");
+    } else {
+      emit("@" + base, "D=M", "@" + offset, "A=D+A", "D=M");
+    }
+    cached = true;
+  }
+
+  private void popIndirect(String base, int offset) {
+    load();
+    if (offset <= MAX_INLINE_OFFSET) {
+      emit("@" + base, offset == 0 ? "A=M" : "A=M+1");
+      for (int i = 1; i < offset; i++) {
+        emit("A=A+1");
+      }
+      emit("M=D");
+    } else {
+      emit("@R13", "M=D", "@" + base, "D=M", "@" + offset, "D=D+A", "@R14", "M=D");
+      emit("@R13", "D=M", "@R14", "A=M", "M=D");
+    }
+    cached = false;
+  }
+
+  // The left operand is popped from memory, the right one is the cached top.
+  private void binary(String operation) {
+    load();
+    emit("@SP", "AM=M-1", operation);
+  }
+
+  private int compare(int pc, String jump, String negatedJump) {
+    load();
+    emit("@SP", "AM=M-1", "D=M-D");
+    if (isNext(pc, 1, IF_GOTO)) {
+      emit("@" + jumpLabel(program.firstArguments[pc + 1]), "D;" + jump);
+      cached = false;
+      return pc + 2;
+    }
+    if (isNext(pc, 1, NOT) && isNext(pc, 2, IF_GOTO)) {
+      emit("@" + jumpLabel(program.firstArguments[pc + 2]), "D;" + negatedJump);
+      cached = false;
+      return pc + 3;
+    }
+    String trueLabel = "$TRUE" + labelCount;
+    String endLabel = "$END" + labelCount;
+    labelCount++;
+    emit("@" + trueLabel, "D;" + jump, "D=0", "@" + endLabel, "0;JMP");
+    label(trueLabel);
+    emit("D=-1");
+    label(endLabel);
+    return pc + 1;
+  }
+
+  // The arguments are on the stack in memory. The trampoline gets the callee in R13 and the
+  // return address in D.
+  private void call(int function, int argumentCount, String returnLabel) {
+    argumentCounts.add(argumentCount);
+    emit("@" + program.functionNames().get(function), "D=A", "@R13", "M=D");
+    emit("@" + returnLabel, "D=A", "@" + CALL_TRAMPOLINE + argumentCount, "0;JMP");
+    label(returnLabel);
+    cached = true;
+  }
+
+  private void pushZeros(int count) {
+    if (count == 0) {
+      return;
+    }
+    if (count <= MAX_INLINE_LOCALS) {
+      emit("@SP", "A=M", "M=0");
+      for (int i = 1; i < count; i++) {
+        emit("A=A+1", "M=0");
+      }
+      emit("D=A+1", "@SP", "M=D");
+      return;
+    }
+    String loop = "$ZEROS" + labelCount++;
+    emit("@" + count, "D=A");
+    label(loop);
+    emit("@SP", "AM=M+1", "A=A-1", "M=0", "D=D-1", "@" + loop, "D;JGT");
+  }
+
+  private void callTrampoline(int argumentCount) {
+    label(CALL_TRAMPOLINE + argumentCount);
+    emit("@SP", "A=M", "M=D");
+    for (String saved : new String[] {"LCL", "ARG", "THIS", "THAT"}) {
+      emit("@" + saved, "D=M", "@SP", "AM=M+1", "M=D");
+    }
+    emit("@SP", "MD=M+1", "@LCL", "M=D");
+    emit("@" + (argumentCount + FRAME_SIZE), "D=D-A", "@ARG", "M=D");
+    emit("@R13", "A=M", "0;JMP");
+  }
+
+  // The returned value is in D. It stays there, and SP is set to where the caller expects it.
+  // LCL walks down the frame while the saved pointers are restored, LCL itself last.
+  private void returnTrampoline() {
+    label(RETURN_TRAMPOLINE);
+    emit("@R15", "M=D");
+    emit("@ARG", "D=M", "@SP", "M=D");
+    for (String restored : new String[] {"THAT", "THIS", "ARG"}) {
+      emit("@LCL", "AM=M-1", "D=M", "@" + restored, "M=D");
+    }
+    emit("@LCL", "AM=M-1", "A=A-1", "D=M", "@R14", "M=D");
+    emit("@LCL", "A=M", "D=M", "@LCL", "M=D");
+    emit("@R15", "D=M", "@R14", "A=M", "0;JMP");
+  }
+
+  // Loads the top of the stack into D if it isn't there already.
+  private void load() {
+    if (!cached) {
+      emit("@SP", "AM=M-1", "D=M");
+      cached = true;
+    }
+  }
+
+  // Stores the cached top of the stack to memory.
+  private void flush() {
+    if (cached) {
+      emit("@SP", "AM=M+1", "A=A-1", "M=D");
+      cached = false;
+    }
+  }
+
+  // Whether the command at pc + distance has the opcode and isn't reached by a jump, so that it
+  // can be fused with the commands before it.
+  private boolean isNext(int pc, int distance, int opcode) {
+    int next = pc + distance;
+    if (next >= program.size() || program.opcodes[next] != opcode) {
+      return false;
+    }
+    for (int i = pc + 1; i <= next; i++) {
+      if (jumpTargets[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean isNext(int pc, int distance, int opcode, int argument) {
+    return isNext(pc, distance, opcode) && program.firstArguments[pc + distance] == argument;
+  }
+
+  private static String jumpLabel(int pc) {
+    return "$L" + pc;
+  }
+
+  private void label(String label) {
+    lines.add("(" + label + ")");
+  }
+
+  private void emit(String... instructions) {
+    for (String instruction : instructions) {
+      lines.add(instruction);
+    }
+  }
+}
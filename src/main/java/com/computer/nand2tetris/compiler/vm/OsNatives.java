@@ -0,0 +1,365 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableMap;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Java stand-ins for the functions of the Jack OS, working on the RAM of the interpreter so that
+// the objects they return (strings, arrays) are usable from VM code. Screen drawing is not
+// simulated, and the keyboard reads from an optional reader instead of waiting for key presses.
+// Each function has a rough cycle cost, close to what the Hack implementation of the OS takes,
+// and the functions whose work depends on their arguments charge more as they run.
+final class OsNatives {
+
+  static final int HEAP_BASE = 2048;
+  static final int HEAP_LIMIT = 16384;
+
+  private static final char NEW_LINE = 128;
+  private static final char BACKSPACE = 129;
+  private static final char DOUBLE_QUOTE = '"';
+
+  // String objects are laid out as [capacity, length, characters...].
+  private static final int STRING_CAPACITY = 0;
+  private static final int STRING_LENGTH = 1;
+  private static final int STRING_CHARACTERS = 2;
+
+  interface Implementation {
+    int call(OsNatives os, int[] arguments);
+  }
+
+  static final class NativeFunction {
+    final int arity;
+    final int cycles;
+    final Implementation implementation;
+
+    NativeFunction(int arity, int cycles, Implementation implementation) {
+      this.arity = arity;
+      this.cycles = cycles;
+      this.implementation = implementation;
+    }
+  }
+
+  private static final ImmutableMap<String, NativeFunction> FUNCTIONS =
+      ImmutableMap.<String, NativeFunction>builder()
+          .put("Math.init", function(0, 10, (os, a) -> 0))
+          .put("Math.abs", function(1, 20, (os, a) -> (short) Math.abs(a[0])))
+          .put("Math.multiply", function(2, 250, (os, a) -> (short) (a[0] * a[1])))
+          .put("Math.divide", function(2, 400, (os, a) -> os.divide(a[0], a[1])))
+          .put("Math.min", function(2, 25, (os, a) -> Math.min(a[0], a[1])))
+          .put("Math.max", function(2, 25, (os, a) -> Math.max(a[0], a[1])))
+          .put("Math.sqrt", function(1, 600, (os, a) -> os.sqrt(a[0])))
+          .put("Memory.init", function(0, 10, (os, a) -> 0))
+          .put("Memory.peek", function(1, 20, (os, a) -> os.ram[os.address(a[0])]))
+          .put("Memory.poke", function(2, 20, (os, a) -> os.poke(a[0], a[1])))
+          .put("Memory.alloc", function(1, 150, (os, a) -> os.alloc(a[0])))
+          .put("Memory.deAlloc", function(1, 60, (os, a) -> os.deAlloc(a[0])))
+          .put("Array.new", function(1, 160, (os, a) -> os.alloc(a[0])))
+          .put("Array.dispose", function(1, 70, (os, a) -> os.deAlloc(a[0])))
+          .put("String.new", function(1, 200, (os, a) -> os.newString(a[0])))
+          .put("String.dispose", function(1, 70, (os, a) -> os.deAlloc(a[0])))
+          .put("String.length", function(1, 20, (os, a) -> os.field(a[0], STRING_LENGTH)))
+          .put("String.charAt", function(2, 30, (os, a) -> os.charAt(a[0], a[1])))
+          .put("String.setCharAt", function(3, 30, (os, a) -> os.setCharAt(a[0], a[1], a[2])))
+          .put("String.appendChar", function(2, 40, (os, a) -> os.appendChar(a[0], a[1])))
+          .put("String.eraseLastChar", function(1, 25, (os, a) -> os.eraseLastChar(a[0])))
+          .put("String.intValue", function(1, 60, (os, a) -> os.intValue(a[0])))
+          .put("String.setInt", function(2, 400, (os, a) -> os.setInt(a[0], a[1])))
+          .put("String.backSpace", function(0, 10, (os, a) -> BACKSPACE))
+          .put("String.doubleQuote", function(0, 10, (os, a) -> DOUBLE_QUOTE))
+          .put("String.newLine", function(0, 10, (os, a) -> NEW_LINE))
+          .put("Output.init", function(0, 10, (os, a) -> 0))
+          .put("Output.moveCursor", function(2, 40, (os, a) -> 0))
+          .put("Output.printChar", function(1, 900, (os, a) -> os.printChar(a[0])))
+          .put("Output.printString", function(1, 50, (os, a) -> os.printString(a[0])))
+          .put("Output.printInt", function(1, 500, (os, a) -> os.printInt(a[0])))
+          .put("Output.println", function(0, 40, (os, a) -> os.printChar(NEW_LINE)))
+          .put("Output.backSpace", function(0, 900, (os, a) -> os.printChar(BACKSPACE)))
+          .put("Screen.init", function(0, 10, (os, a) -> 0))
+          .put("Screen.clearScreen", function(0, 80000, (os, a) -> 0))
+          .put("Screen.setColor", function(1, 15, (os, a) -> 0))
+          .put("Screen.drawPixel", function(2, 300, (os, a) -> 0))
+          .put("Screen.drawLine", function(4, 3000, (os, a) -> 0))
+          .put("Screen.drawRectangle", function(4, 10000, (os, a) -> 0))
+          .put("Screen.drawCircle", function(3, 10000, (os, a) -> 0))
+          .put("Keyboard.init", function(0, 10, (os, a) -> 0))
+          .put("Keyboard.keyPressed", function(0, 20, (os, a) -> 0))
+          .put("Keyboard.readChar", function(0, 1000, (os, a) -> os.readChar()))
+          .put("Keyboard.readLine", function(1, 1000, (os, a) -> os.readLine(a[0])))
+          .put("Keyboard.readInt", function(1, 1000, (os, a) -> os.readInt(a[0])))
+          .put("Sys.halt", function(0, 10, (os, a) -> os.halt()))
+          .put("Sys.error", function(1, 10, (os, a) -> os.error(a[0])))
+          .put("Sys.wait", function(1, 50, (os, a) -> 0))
+          .build();
+
+  final int[] ram;
+  private final Appendable output;
+  private final Optional<BufferedReader> input;
+  private final Map<Integer, Integer> blockSizes = new HashMap<>();
+  private final Map<Integer, Deque<Integer>> freeBlocks = new HashMap<>();
+  private int heapTop = HEAP_BASE;
+  private long extraCycles = 0;
+  private boolean halted = false;
+
+  OsNatives(int[] ram, Appendable output, Optional<BufferedReader> input) {
+    this.ram = ram;
+    this.output = output;
+    this.input = input;
+  }
+
+  static Optional<NativeFunction> lookup(String functionName) {
+    return Optional.fromNullable(FUNCTIONS.get(functionName));
+  }
+
+  private static NativeFunction function(
+      int arity, int cycles, Implementation implementation) {
+    return new NativeFunction(arity, cycles, implementation);
+  }
+
+  boolean halted() {
+    return halted;
+  }
+
+  // The cycles charged by the functions since the last call, on top of their fixed costs.
+  long takeExtraCycles() {
+    long cycles = extraCycles;
+    extraCycles = 0;
+    return cycles;
+  }
+
+  private int halt() {
+    halted = true;
+    return 0;
+  }
+
+  // The error codes are those of the Jack OS, e.g. 3 for a division by zero.
+  private int error(int code) {
+    throw new IllegalStateException("Sys.error(" + code + ")");
+  }
+
+  private int divide(int dividend, int divisor) {
+    if (divisor == 0) {
+      error(3);
+    }
+    return (short) (dividend / divisor);
+  }
+
+  private int sqrt(int value) {
+    if (value < 0) {
+      error(4);
+    }
+    return (int) Math.sqrt(value);
+  }
+
+  private int address(int address) {
+    int unsigned = address & 0xFFFF;
+    if (unsigned >= ram.length) {
+      throw new IllegalStateException("Address out of range: " + unsigned);
+    }
+    return unsigned;
+  }
+
+  private int poke(int address, int value) {
+    ram[address(address)] = value;
+    return 0;
+  }
+
+  // Blocks of each size are reused when freed; the heap only grows when none is free.
+  private int alloc(int size) {
+    if (size <= 0) {
+      error(5);
+    }
+    Deque<Integer> free = freeBlocks.get(size);
+    if (free != null && !free.isEmpty()) {
+      int block = free.pop();
+      blockSizes.put(block, size);
+      return block;
+    }
+    if (heapTop + size > HEAP_LIMIT) {
+      error(6);
+    }
+    int block = heapTop;
+    heapTop += size;
+    blockSizes.put(block, size);
+    return block;
+  }
+
+  private int deAlloc(int block) {
+    Integer size = blockSizes.remove(block);
+    if (size != null) {
+      freeBlocks.computeIfAbsent(size, s -> new ArrayDeque<>()).push(block);
+    }
+    return 0;
+  }
+
+  private int field(int object, int offset) {
+    return ram[address(object + offset)];
+  }
+
+  private void setField(int object, int offset, int value) {
+    ram[address(object + offset)] = value;
+  }
+
+  private int newString(int capacity) {
+    if (capacity < 0) {
+      error(14);
+    }
+    int string = alloc(capacity + STRING_CHARACTERS);
+    setField(string, STRING_CAPACITY, capacity);
+    setField(string, STRING_LENGTH, 0);
+    return string;
+  }
+
+  private int charAt(int string, int index) {
+    if (index < 0 || index >= field(string, STRING_LENGTH)) {
+      error(15);
+    }
+    return field(string, STRING_CHARACTERS + index);
+  }
+
+  private int setCharAt(int string, int index, int character) {
+    if (index < 0 || index >= field(string, STRING_LENGTH)) {
+      error(16);
+    }
+    setField(string, STRING_CHARACTERS + index, character);
+    return 0;
+  }
+
+  private int appendChar(int string, int character) {
+    int length = field(string, STRING_LENGTH);
+    if (length >= field(string, STRING_CAPACITY)) {
+      error(17);
+    }
+    setField(string, STRING_CHARACTERS + length, character);
+    setField(string, STRING_LENGTH, length + 1);
+    return string;
+  }
+
+  private int eraseLastChar(int string) {
+    int length = field(string, STRING_LENGTH);
+    if (length == 0) {
+      error(18);
+    }
+    setField(string, STRING_LENGTH, length - 1);
+    return 0;
+  }
+
+  // Like the Jack OS: an optional minus sign followed by the leading digits.
+  private int intValue(int string) {
+    int length = field(string, STRING_LENGTH);
+    int index = 0;
+    boolean negative = length > 0 && field(string, STRING_CHARACTERS) == '-';
+    if (negative) {
+      index++;
+    }
+    int value = 0;
+    for (; index < length; index++) {
+      int character = field(string, STRING_CHARACTERS + index);
+      if (character < '0' || character > '9') {
+        break;
+      }
+      value = value * 10 + character - '0';
+      extraCycles += 40;
+    }
+    return (short) (negative ? -value : value);
+  }
+
+  private int setInt(int string, int value) {
+    String digits = Integer.toString((short) value);
+    if (digits.length() > field(string, STRING_CAPACITY)) {
+      error(19);
+    }
+    for (int i = 0; i < digits.length(); i++) {
+      setField(string, STRING_CHARACTERS + i, digits.charAt(i));
+    }
+    setField(string, STRING_LENGTH, digits.length());
+    return 0;
+  }
+
+  private String text(int string) {
+    StringBuilder text = new StringBuilder();
+    int length = field(string, STRING_LENGTH);
+    for (int i = 0; i < length; i++) {
+      text.append((char) field(string, STRING_CHARACTERS + i));
+    }
+    return text.toString();
+  }
+
+  // The Jack character set is ASCII plus newline (128) and backspace (129). Backspaces can't be
+  // undone in a stream and are left out of the output.
+  private int printChar(int character) {
+    try {
+      if (character == NEW_LINE) {
+        output.append('\n');
+      } else if (character >= 0 && character < NEW_LINE) {
+        output.append((char) character);
+      }
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    return 0;
+  }
+
+  private int printString(int string) {
+    int length = field(string, STRING_LENGTH);
+    for (int i = 0; i < length; i++) {
+      printChar(field(string, STRING_CHARACTERS + i));
+    }
+    extraCycles += 900L * length;
+    return 0;
+  }
+
+  private int printInt(int value) {
+    String digits = Integer.toString((short) value);
+    for (int i = 0; i < digits.length(); i++) {
+      printChar(digits.charAt(i));
+    }
+    extraCycles += 900L * digits.length();
+    return 0;
+  }
+
+  private Optional<String> nextLine() {
+    if (!input.isPresent()) {
+      return Optional.absent();
+    }
+    try {
+      return Optional.fromNullable(input.get().readLine());
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  // Without input (or at its end), reads as if enter was pressed.
+  private int readChar() {
+    if (!input.isPresent()) {
+      return NEW_LINE;
+    }
+    try {
+      int character = input.get().read();
+      return character < 0 || character == '\n' ? NEW_LINE : character;
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private int readLine(int message) {
+    printString(message);
+    String line = nextLine().or("");
+    int string = newString(line.length());
+    for (int i = 0; i < line.length(); i++) {
+      appendChar(string, line.charAt(i));
+    }
+    return string;
+  }
+
+  private int readInt(int message) {
+    int line = readLine(message);
+    int value = intValue(line);
+    deAlloc(line);
+    return value;
+  }
+}
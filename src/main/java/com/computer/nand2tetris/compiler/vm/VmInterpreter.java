@@ -0,0 +1,372 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import static com.computer.nand2tetris.compiler.vm.VmProgram.ADD;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.AND;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.CALL;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.END_OF_FUNCTION;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.EQ;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.FUNCTION;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.GOTO;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.GT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.IF_GOTO;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.LT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.NEG;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.NOT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.OPCODE_COUNT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.OR;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_ARGUMENT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_FIXED;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_LOCAL;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_THAT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.POP_THIS;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_ARGUMENT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_CONSTANT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_FIXED;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_LOCAL;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_THAT;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.PUSH_THIS;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.RETURN;
+import static com.computer.nand2tetris.compiler.vm.VmProgram.SUB;
+
+import com.google.common.base.Optional;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.util.Arrays;
+
+// Runs a VmProgram in process, with the memory layout of the Hack platform (SP, LCL, ARG, THIS
+// and THAT in RAM[0..4], the stack from 256 and the heap from 2048) and the OS provided by
+// OsNatives. The program starts at Sys.init, or at Main.main when it has no Sys.init, and ends
+// when that function returns or Sys.halt is called.
+//
+// Every instruction executed is counted, with an estimate of its cost in Hack cycles: the number
+// of Hack instructions a plain translation of the VM command takes. Both are attributed to the
+// function that executes it, so that changes to the code generator can be compared without the
+// CPU emulator.
+public final class VmInterpreter {
+
+  static final int RAM_SIZE = 32768;
+  static final int SP = 0;
+  static final int LCL = 1;
+  static final int ARG = 2;
+  static final int THIS = 3;
+  static final int THAT = 4;
+  static final int STACK_BASE = 256;
+  static final int STACK_LIMIT = OsNatives.HEAP_BASE;
+
+  private static final int FRAME_SIZE = 5;
+  private static final int HALT = -1;
+  private static final int CYCLES_PER_LOCAL = 5;
+
+  private static final int[] CYCLES = new int[OPCODE_COUNT];
+
+  static {
+    CYCLES[PUSH_CONSTANT] = 7;
+    CYCLES[PUSH_LOCAL] = 11;
+    CYCLES[PUSH_ARGUMENT] = 11;
+    CYCLES[PUSH_THIS] = 11;
+    CYCLES[PUSH_THAT] = 11;
+    CYCLES[PUSH_FIXED] = 7;
+    CYCLES[POP_LOCAL] = 12;
+    CYCLES[POP_ARGUMENT] = 12;
+    CYCLES[POP_THIS] = 12;
+    CYCLES[POP_THAT] = 12;
+    CYCLES[POP_FIXED] = 5;
+    CYCLES[ADD] = 5;
+    CYCLES[SUB] = 5;
+    CYCLES[NEG] = 3;
+    CYCLES[EQ] = 13;
+    CYCLES[GT] = 13;
+    CYCLES[LT] = 13;
+    CYCLES[AND] = 5;
+    CYCLES[OR] = 5;
+    CYCLES[NOT] = 3;
+    CYCLES[GOTO] = 2;
+    CYCLES[IF_GOTO] = 4;
+    CYCLES[CALL] = 44;
+    CYCLES[FUNCTION] = 1;
+    CYCLES[RETURN] = 45;
+  }
+
+  private final VmProgram program;
+  private final int[] ram = new int[RAM_SIZE];
+  private final OsNatives os;
+  // The OS function of every undefined function, resolved when it is first called.
+  private final OsNatives.NativeFunction[] natives;
+
+  private final long[] calls;
+  private final long[] instructions;
+  private final long[] cycles;
+  private final long[] inclusiveInstructions;
+  private final long[] inclusiveCycles;
+  private final int[] activations;
+  private long totalInstructions = 0;
+  private long totalCycles = 0;
+
+  // The functions being run, with the totals when they were called.
+  private int[] frameFunctions = new int[64];
+  private long[] frameInstructions = new long[64];
+  private long[] frameCycles = new long[64];
+  private int depth = 0;
+
+  public VmInterpreter(VmProgram program, Appendable output, Optional<BufferedReader> input) {
+    this.program = program;
+    this.os = new OsNatives(ram, output, input);
+    int functionCount = program.functionNames().size();
+    this.natives = new OsNatives.NativeFunction[functionCount];
+    this.calls = new long[functionCount];
+    this.instructions = new long[functionCount];
+    this.cycles = new long[functionCount];
+    this.inclusiveInstructions = new long[functionCount];
+    this.inclusiveCycles = new long[functionCount];
+    this.activations = new int[functionCount];
+  }
+
+  // Fails when the program runs more than maxInstructions instructions, e.g. in an endless loop.
+  public VmProfile run(long maxInstructions) {
+    int entry = program.functionIndex("Sys.init");
+    if (entry < 0 || !program.isDefined(entry)) {
+      entry = program.functionIndex("Main.main");
+    }
+    if (entry < 0 || !program.isDefined(entry)) {
+      throw new IllegalArgumentException("The program has neither Sys.init nor Main.main.");
+    }
+
+    int[] opcodes = program.opcodes;
+    int[] firstArguments = program.firstArguments;
+    int[] secondArguments = program.secondArguments;
+    int sp = STACK_BASE;
+    // The bootstrap frame returns to HALT.
+    ram[sp++] = HALT;
+    sp += FRAME_SIZE - 1;
+    ram[ARG] = STACK_BASE;
+    ram[LCL] = sp;
+    enter(entry);
+    int function = entry;
+    int pc = program.functionEntries[entry];
+    try {
+      while (pc != HALT) {
+        if (totalInstructions >= maxInstructions) {
+          throw new IllegalStateException(
+              "More than " + maxInstructions + " instructions were executed");
+        }
+        int opcode = opcodes[pc];
+        int argument = firstArguments[pc];
+        instructions[function]++;
+        cycles[function] += CYCLES[opcode];
+        totalInstructions++;
+        totalCycles += CYCLES[opcode];
+        pc++;
+        switch (opcode) {
+          case PUSH_CONSTANT:
+            ram[sp++] = argument;
+            break;
+          case PUSH_LOCAL:
+            ram[sp++] = ram[ram[LCL] + argument];
+            break;
+          case PUSH_ARGUMENT:
+            ram[sp++] = ram[ram[ARG] + argument];
+            break;
+          case PUSH_THIS:
+            ram[sp++] = ram[address(ram[THIS] + argument)];
+            break;
+          case PUSH_THAT:
+            ram[sp++] = ram[address(ram[THAT] + argument)];
+            break;
+          case PUSH_FIXED:
+            ram[sp++] = ram[argument];
+            break;
+          case POP_LOCAL:
+            ram[ram[LCL] + argument] = ram[--sp];
+            break;
+          case POP_ARGUMENT:
+            ram[ram[ARG] + argument] = ram[--sp];
+            break;
+          case POP_THIS:
+            ram[address(ram[THIS] + argument)] = ram[--sp];
+            break;
+          case POP_THAT:
+            ram[address(ram[THAT] + argument)] = ram[--sp];
+            break;
+          case POP_FIXED:
+            ram[argument] = ram[--sp];
+            break;
+          case ADD:
+            sp--;
+            ram[sp - 1] = (short) (ram[sp - 1] + ram[sp]);
+            break;
+          case SUB:
+            sp--;
+            ram[sp - 1] = (short) (ram[sp - 1] - ram[sp]);
+            break;
+          case NEG:
+            ram[sp - 1] = (short) -ram[sp - 1];
+            break;
+          case EQ:
+            sp--;
+            ram[sp - 1] = ram[sp - 1] == ram[sp] ? -1 : 0;
+            break;
+          case GT:
+            sp--;
+            ram[sp - 1] = ram[sp - 1] > ram[sp] ? -1 : 0;
+            break;
+          case LT:
+            sp--;
+            ram[sp - 1] = ram[sp - 1] < ram[sp] ? -1 : 0;
+            break;
+          case AND:
+            sp--;
+            ram[sp - 1] = ram[sp - 1] & ram[sp];
+            break;
+          case OR:
+            sp--;
+            ram[sp - 1] = ram[sp - 1] | ram[sp];
+            break;
+          case NOT:
+            ram[sp - 1] = ~ram[sp - 1];
+            break;
+          case GOTO:
+            pc = argument;
+            break;
+          case IF_GOTO:
+            if (ram[--sp] != 0) {
+              pc = argument;
+            }
+            break;
+          case CALL:
+            int argumentCount = secondArguments[pc - 1];
+            if (program.isDefined(argument)) {
+              if (sp + FRAME_SIZE >= STACK_LIMIT) {
+                throw new IllegalStateException("Stack overflow");
+              }
+              ram[sp++] = pc;
+              ram[sp++] = ram[LCL];
+              ram[sp++] = ram[ARG];
+              ram[sp++] = ram[THIS];
+              ram[sp++] = ram[THAT];
+              ram[ARG] = sp - argumentCount - FRAME_SIZE;
+              ram[LCL] = sp;
+              enter(argument);
+              function = argument;
+              pc = program.functionEntries[argument];
+            } else {
+              ram[SP] = sp;
+              sp = callNative(argument, argumentCount, sp);
+              if (os.halted()) {
+                pc = HALT;
+              }
+            }
+            break;
+          case FUNCTION:
+            int localCount = secondArguments[pc - 1];
+            if (sp + localCount >= STACK_LIMIT) {
+              throw new IllegalStateException("Stack overflow");
+            }
+            Arrays.fill(ram, sp, sp + localCount, 0);
+            sp += localCount;
+            cycles[function] += CYCLES_PER_LOCAL * localCount;
+            totalCycles += CYCLES_PER_LOCAL * localCount;
+            break;
+          case RETURN:
+            int frame = ram[LCL];
+            pc = ram[frame - FRAME_SIZE];
+            ram[ram[ARG]] = ram[sp - 1];
+            sp = ram[ARG] + 1;
+            ram[THAT] = ram[frame - 1];
+            ram[THIS] = ram[frame - 2];
+            ram[ARG] = ram[frame - 3];
+            ram[LCL] = ram[frame - 4];
+            leave();
+            function = depth > 0 ? frameFunctions[depth - 1] : entry;
+            break;
+          case END_OF_FUNCTION:
+            throw new IllegalStateException("Ran past the end of the function");
+          default:
+            throw new IllegalStateException("Unknown opcode " + opcode);
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new IllegalStateException(
+          String.format(
+              "%s in %s at instruction %d",
+              e.getMessage(), program.functionNames().get(function), pc - 1),
+          e);
+    }
+    ram[SP] = sp;
+    while (depth > 0) {
+      leave();
+    }
+    return profile();
+  }
+
+  private static int address(int address) {
+    return address & 0xFFFF;
+  }
+
+  // Pops the arguments, calls the OS function and pushes its result. Returns the new SP.
+  private int callNative(int function, int argumentCount, int sp) {
+    OsNatives.NativeFunction nativeFunction = natives[function];
+    if (nativeFunction == null) {
+      String name = program.functionNames().get(function);
+      Optional<OsNatives.NativeFunction> found = OsNatives.lookup(name);
+      if (!found.isPresent()) {
+        throw new IllegalStateException("Function " + name + " is not defined");
+      }
+      nativeFunction = found.get();
+      natives[function] = nativeFunction;
+    }
+    if (nativeFunction.arity != argumentCount) {
+      throw new IllegalStateException(String.format(
+          "%s expects %d arguments, got %d",
+          program.functionNames().get(function), nativeFunction.arity, argumentCount));
+    }
+    int[] arguments = Arrays.copyOfRange(ram, sp - argumentCount, sp);
+    sp -= argumentCount;
+    ram[sp++] = nativeFunction.implementation.call(os, arguments);
+    long nativeCycles = nativeFunction.cycles + os.takeExtraCycles();
+    calls[function]++;
+    cycles[function] += nativeCycles;
+    inclusiveCycles[function] += nativeCycles;
+    totalCycles += nativeCycles;
+    return sp;
+  }
+
+  private void enter(int function) {
+    if (depth == frameFunctions.length) {
+      frameFunctions = Arrays.copyOf(frameFunctions, depth * 2);
+      frameInstructions = Arrays.copyOf(frameInstructions, depth * 2);
+      frameCycles = Arrays.copyOf(frameCycles, depth * 2);
+    }
+    frameFunctions[depth] = function;
+    frameInstructions[depth] = totalInstructions;
+    frameCycles[depth] = totalCycles;
+    depth++;
+    calls[function]++;
+    activations[function]++;
+  }
+
+  private void leave() {
+    depth--;
+    int function = frameFunctions[depth];
+    if (--activations[function] == 0) {
+      inclusiveInstructions[function] += totalInstructions - frameInstructions[depth];
+      inclusiveCycles[function] += totalCycles - frameCycles[depth];
+    }
+  }
+
+  private VmProfile profile() {
+    ImmutableList.Builder<FunctionProfile> functions = ImmutableList.builder();
+    for (int function = 0; function < calls.length; function++) {
+      if (calls[function] > 0) {
+        functions.add(FunctionProfile.create(
+            program.functionNames().get(function),
+            !program.isDefined(function),
+            calls[function],
+            instructions[function],
+            cycles[function],
+            inclusiveInstructions[function],
+            inclusiveCycles[function]));
+      }
+    }
+    return new VmProfile(totalInstructions, totalCycles, functions.build());
+  }
+}
@@ -0,0 +1,56 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import com.google.common.collect.ImmutableList;
+import java.util.Comparator;
+
+// The instruction and cycle counts of a run of VmInterpreter, per function and in total.
+public final class VmProfile {
+
+  private final long instructions;
+  private final long cycles;
+  private final ImmutableList<FunctionProfile> functions;
+
+  VmProfile(long instructions, long cycles, Iterable<FunctionProfile> functions) {
+    this.instructions = instructions;
+    this.cycles = cycles;
+    this.functions = ImmutableList.sortedCopyOf(
+        Comparator.comparingLong(FunctionProfile::inclusiveCycles)
+            .reversed()
+            .thenComparing(FunctionProfile::name),
+        functions);
+  }
+
+  public long instructions() {
+    return instructions;
+  }
+
+  public long cycles() {
+    return cycles;
+  }
+
+  // The functions that were called, by decreasing inclusive cycles.
+  public ImmutableList<FunctionProfile> functions() {
+    return functions;
+  }
+
+  // One line per function, for reports.
+  public String format() {
+    StringBuilder report = new StringBuilder();
+    report.append(String.format(
+        "%-40s %10s %14s %14s %14s %14s%n",
+        "function", "calls", "instructions", "cycles", "incl. instr.", "incl. cycles"));
+    for (FunctionProfile function : functions) {
+      report.append(String.format(
+          "%-40s %10d %14d %14d %14d %14d%n",
+          function.name() + (function.isNative() ? " (os)" : ""),
+          function.calls(),
+          function.instructions(),
+          function.cycles(),
+          function.inclusiveInstructions(),
+          function.inclusiveCycles()));
+    }
+    report.append(String.format(
+        "%-40s %10s %14d %14d%n", "total", "", instructions, cycles));
+    return report.toString();
+  }
+}
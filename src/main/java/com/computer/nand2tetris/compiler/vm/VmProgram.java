@@ -0,0 +1,377 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// The commands of a set of .vm files (one per class), linked into flat int arrays for
+// VmInterpreter. Segments are resolved when loading: pointer, temp and static accesses become
+// fixed addresses (the statics of each class after those of the classes before it), labels
+// become instruction indices within their function and called functions become indices into
+// functionNames(). Labels don't produce instructions. A function that could run past its last
+// command, or has a label after it, ends with an END_OF_FUNCTION trap instead of falling into
+// the next function.
+public final class VmProgram {
+
+  static final int PUSH_CONSTANT = 0;
+  static final int PUSH_LOCAL = 1;
+  static final int PUSH_ARGUMENT = 2;
+  static final int PUSH_THIS = 3;
+  static final int PUSH_THAT = 4;
+  static final int PUSH_FIXED = 5;
+  static final int POP_LOCAL = 6;
+  static final int POP_ARGUMENT = 7;
+  static final int POP_THIS = 8;
+  static final int POP_THAT = 9;
+  static final int POP_FIXED = 10;
+  static final int ADD = 11;
+  static final int SUB = 12;
+  static final int NEG = 13;
+  static final int EQ = 14;
+  static final int GT = 15;
+  static final int LT = 16;
+  static final int AND = 17;
+  static final int OR = 18;
+  static final int NOT = 19;
+  static final int GOTO = 20;
+  static final int IF_GOTO = 21;
+  static final int CALL = 22;
+  static final int FUNCTION = 23;
+  static final int RETURN = 24;
+  static final int END_OF_FUNCTION = 25;
+  static final int OPCODE_COUNT = 26;
+
+  static final int POINTER_BASE = 3;
+  static final int TEMP_BASE = 5;
+  static final int TEMP_SIZE = 8;
+  static final int STATIC_BASE = 16;
+  static final int STATIC_LIMIT = 256;
+
+  private static final ImmutableMap<String, Integer> ARITHMETIC_OPCODES =
+      ImmutableMap.<String, Integer>builder()
+          .put("add", ADD)
+          .put("sub", SUB)
+          .put("neg", NEG)
+          .put("eq", EQ)
+          .put("gt", GT)
+          .put("lt", LT)
+          .put("and", AND)
+          .put("or", OR)
+          .put("not", NOT)
+          .build();
+
+  final int[] opcodes;
+  final int[] firstArguments;
+  final int[] secondArguments;
+  // Indexed by function, -1 for the functions that aren't defined (the OS, provided natively).
+  final int[] functionEntries;
+  private final ImmutableList<String> functionNames;
+
+  private VmProgram(
+      int[] opcodes,
+      int[] firstArguments,
+      int[] secondArguments,
+      int[] functionEntries,
+      ImmutableList<String> functionNames) {
+    this.opcodes = opcodes;
+    this.firstArguments = firstArguments;
+    this.secondArguments = secondArguments;
+    this.functionEntries = functionEntries;
+    this.functionNames = functionNames;
+  }
+
+  // Loads the .vm files, each one named after its class.
+  public static VmProgram load(Iterable<File> vmFiles) {
+    Map<String, List<String>> sources = new LinkedHashMap<>();
+    for (File vmFile : vmFiles) {
+      try {
+        sources.put(
+            Files.getNameWithoutExtension(vmFile.getName()),
+            Files.readLines(vmFile, Charsets.UTF_8));
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return parse(sources);
+  }
+
+  // The lines of the VM code of every class, by class name.
+  public static VmProgram parse(Map<String, List<String>> sourcesByClassName) {
+    return new Linker(sourcesByClassName).link();
+  }
+
+  public int size() {
+    return opcodes.length;
+  }
+
+  public ImmutableList<String> functionNames() {
+    return functionNames;
+  }
+
+  int functionIndex(String functionName) {
+    return functionNames.indexOf(functionName);
+  }
+
+  boolean isDefined(int function) {
+    return functionEntries[function] >= 0;
+  }
+
+  private static final class Linker {
+
+    private final Map<String, List<String>> sourcesByClassName;
+    private final Map<String, Integer> functionIndices = new HashMap<>();
+    private final List<String> functionNames = new ArrayList<>();
+    private final List<Integer> functionEntries = new ArrayList<>();
+    private final Instructions instructions = new Instructions();
+    private int staticBase = STATIC_BASE;
+
+    Linker(Map<String, List<String>> sourcesByClassName) {
+      this.sourcesByClassName = sourcesByClassName;
+    }
+
+    VmProgram link() {
+      for (Map.Entry<String, List<String>> source : sourcesByClassName.entrySet()) {
+        linkClass(source.getKey(), source.getValue());
+      }
+      int[] entries = new int[functionNames.size()];
+      for (int function = 0; function < entries.length; function++) {
+        entries[function] = functionEntries.get(function);
+      }
+      return new VmProgram(
+          instructions.opcodes(),
+          instructions.firstArguments(),
+          instructions.secondArguments(),
+          entries,
+          ImmutableList.copyOf(functionNames));
+    }
+
+    private void linkClass(String className, List<String> lines) {
+      FunctionLabels labels = null;
+      int staticCount = 0;
+      for (int lineNumber = 1; lineNumber <= lines.size(); lineNumber++) {
+        String[] words = words(lines.get(lineNumber - 1));
+        if (words.length == 0) {
+          continue;
+        }
+        String location = className + ".vm:" + lineNumber;
+        try {
+          switch (words[0]) {
+            case "push":
+            case "pop":
+              staticCount = Math.max(staticCount, addMemoryAccess(words) + 1);
+              break;
+            case "label":
+              requireFunction(labels).define(argument(words, 1), instructions.size());
+              break;
+            case "goto":
+            case "if-goto":
+              requireFunction(labels).reference(argument(words, 1), instructions.size());
+              instructions.add(words[0].equals("goto") ? GOTO : IF_GOTO, 0, 0);
+              break;
+            case "function":
+              if (labels != null) {
+                endFunction(labels);
+              }
+              labels = new FunctionLabels(argument(words, 1));
+              int function = functionIndex(argument(words, 1));
+              Preconditions.checkArgument(
+                  functionEntries.get(function) < 0, "Function %s defined twice", words[1]);
+              functionEntries.set(function, instructions.size());
+              instructions.add(FUNCTION, function, number(words, 2));
+              break;
+            case "call":
+              instructions.add(CALL, functionIndex(argument(words, 1)), number(words, 2));
+              break;
+            case "return":
+              requireFunction(labels);
+              instructions.add(RETURN, 0, 0);
+              break;
+            default:
+              Integer opcode = ARITHMETIC_OPCODES.get(words[0]);
+              Preconditions.checkArgument(opcode != null, "Unknown command %s", words[0]);
+              instructions.add(opcode, 0, 0);
+          }
+        } catch (RuntimeException e) {
+          throw new IllegalArgumentException(location + ": " + e.getMessage(), e);
+        }
+      }
+      if (labels != null) {
+        endFunction(labels);
+      }
+      staticBase += staticCount;
+      Preconditions.checkArgument(
+          staticBase <= STATIC_LIMIT, "The static variables don't fit in RAM[16..255].");
+    }
+
+    // A label after the last command is only reached by jumps from code that can't run, such as
+    // the goto the code generator emits after the return of an if branch.
+    private void endFunction(FunctionLabels labels) {
+      int last = instructions.opcode(instructions.size() - 1);
+      if (labels.isDefinedAt(instructions.size()) || (last != RETURN && last != GOTO)) {
+        instructions.add(END_OF_FUNCTION, 0, 0);
+      }
+      labels.resolve(instructions);
+    }
+
+    // Returns the static index accessed, or -1.
+    private int addMemoryAccess(String[] words) {
+      boolean push = words[0].equals("push");
+      String segment = argument(words, 1);
+      int index = number(words, 2);
+      switch (segment) {
+        case "constant":
+          Preconditions.checkArgument(push, "Can't pop to the constant segment");
+          Preconditions.checkArgument(index <= Short.MAX_VALUE, "Constant %s too large", index);
+          instructions.add(PUSH_CONSTANT, index, 0);
+          return -1;
+        case "local":
+          instructions.add(push ? PUSH_LOCAL : POP_LOCAL, index, 0);
+          return -1;
+        case "argument":
+          instructions.add(push ? PUSH_ARGUMENT : POP_ARGUMENT, index, 0);
+          return -1;
+        case "this":
+          instructions.add(push ? PUSH_THIS : POP_THIS, index, 0);
+          return -1;
+        case "that":
+          instructions.add(push ? PUSH_THAT : POP_THAT, index, 0);
+          return -1;
+        case "pointer":
+          Preconditions.checkArgument(index < 2, "pointer %s out of range", index);
+          instructions.add(push ? PUSH_FIXED : POP_FIXED, POINTER_BASE + index, 0);
+          return -1;
+        case "temp":
+          Preconditions.checkArgument(index < TEMP_SIZE, "temp %s out of range", index);
+          instructions.add(push ? PUSH_FIXED : POP_FIXED, TEMP_BASE + index, 0);
+          return -1;
+        case "static":
+          instructions.add(push ? PUSH_FIXED : POP_FIXED, staticBase + index, 0);
+          return index;
+        default:
+          throw new IllegalArgumentException("Unknown segment " + segment);
+      }
+    }
+
+    private int functionIndex(String functionName) {
+      Integer function = functionIndices.get(functionName);
+      if (function == null) {
+        function = functionNames.size();
+        functionIndices.put(functionName, function);
+        functionNames.add(functionName);
+        functionEntries.add(-1);
+      }
+      return function;
+    }
+
+    private static FunctionLabels requireFunction(FunctionLabels labels) {
+      Preconditions.checkArgument(labels != null, "Command outside of a function");
+      return labels;
+    }
+
+    // Without the comment, split on whitespace.
+    private static String[] words(String line) {
+      int commentStart = line.indexOf("//");
+      String command = (commentStart < 0 ? line : line.substring(0, commentStart)).trim();
+      return command.isEmpty() ? new String[0] : command.split("\\s+");
+    }
+
+    private static String argument(String[] words, int index) {
+      Preconditions.checkArgument(index < words.length, "%s expects more arguments", words[0]);
+      return words[index];
+    }
+
+    private static int number(String[] words, int index) {
+      int number = Integer.parseInt(argument(words, index));
+      Preconditions.checkArgument(number >= 0, "%s expects a non negative number", words[0]);
+      return number;
+    }
+  }
+
+  // The labels of the function being linked. Jumps may come before their label.
+  private static final class FunctionLabels {
+
+    private final String functionName;
+    private final Map<String, Integer> targets = new HashMap<>();
+    private final Map<Integer, String> jumps = new HashMap<>();
+
+    FunctionLabels(String functionName) {
+      this.functionName = functionName;
+    }
+
+    void define(String label, int instruction) {
+      Preconditions.checkArgument(
+          targets.put(label, instruction) == null, "Label %s defined twice", label);
+    }
+
+    void reference(String label, int instruction) {
+      jumps.put(instruction, label);
+    }
+
+    boolean isDefinedAt(int instruction) {
+      return targets.containsValue(instruction);
+    }
+
+    void resolve(Instructions instructions) {
+      for (Map.Entry<Integer, String> jump : jumps.entrySet()) {
+        Integer target = targets.get(jump.getValue());
+        Preconditions.checkArgument(
+            target != null, "Label %s not found in %s", jump.getValue(), functionName);
+        instructions.setFirstArgument(jump.getKey(), target);
+      }
+    }
+  }
+
+  private static final class Instructions {
+
+    private int[] opcodes = new int[256];
+    private int[] firstArguments = new int[256];
+    private int[] secondArguments = new int[256];
+    private int size = 0;
+
+    void add(int opcode, int firstArgument, int secondArgument) {
+      if (size == opcodes.length) {
+        opcodes = Arrays.copyOf(opcodes, size * 2);
+        firstArguments = Arrays.copyOf(firstArguments, size * 2);
+        secondArguments = Arrays.copyOf(secondArguments, size * 2);
+      }
+      opcodes[size] = opcode;
+      firstArguments[size] = firstArgument;
+      secondArguments[size] = secondArgument;
+      size++;
+    }
+
+    int opcode(int instruction) {
+      return opcodes[instruction];
+    }
+
+    void setFirstArgument(int instruction, int firstArgument) {
+      firstArguments[instruction] = firstArgument;
+    }
+
+    int size() {
+      return size;
+    }
+
+    int[] opcodes() {
+      return Arrays.copyOf(opcodes, size);
+    }
+
+    int[] firstArguments() {
+      return Arrays.copyOf(firstArguments, size);
+    }
+
+    int[] secondArguments() {
+      return Arrays.copyOf(secondArguments, size);
+    }
+  }
+}
@@ -0,0 +1,79 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Optional;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.util.Comparator;
+
+// Runs .vm files with VmInterpreter, prints what the program outputs on stdout and the profile
+// on stderr. Exits with 1 when the program takes more cycles than --max-cycles, so that CI can
+// catch code generation changes that make programs slower. Usage:
+//
+//   VmRunner [--max-instructions=N] [--max-cycles=N] [--input=FILE] (file.vm | directory)...
+public final class VmRunner {
+
+  private static final long DEFAULT_MAX_INSTRUCTIONS = 1_000_000_000L;
+
+  private VmRunner() {}
+
+  public static void main(String[] args) {
+    long maxInstructions = DEFAULT_MAX_INSTRUCTIONS;
+    Optional<Long> maxCycles = Optional.absent();
+    Optional<BufferedReader> input = Optional.absent();
+    ImmutableList.Builder<File> vmFiles = ImmutableList.builder();
+    for (String arg : args) {
+      String value = arg.substring(arg.indexOf('=') + 1);
+      if (arg.startsWith("--max-instructions=")) {
+        maxInstructions = Long.parseLong(value);
+      } else if (arg.startsWith("--max-cycles=")) {
+        maxCycles = Optional.of(Long.parseLong(value));
+      } else if (arg.startsWith("--input=")) {
+        input = Optional.of(openInput(value));
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option " + arg);
+      } else {
+        vmFiles.addAll(vmFiles(new File(arg)));
+      }
+    }
+    ImmutableList<File> files = vmFiles.build();
+    Preconditions.checkArgument(!files.isEmpty(), "Expected at least one .vm file or directory.");
+
+    PrintStream output = System.out;
+    VmProfile profile =
+        new VmInterpreter(VmProgram.load(files), output, input).run(maxInstructions);
+    output.flush();
+    System.err.print(profile.format());
+    if (maxCycles.isPresent() && profile.cycles() > maxCycles.get()) {
+      System.err.printf(
+          "The program took %d cycles, more than %d.%n", profile.cycles(), maxCycles.get());
+      System.exit(1);
+    }
+  }
+
+  // The .vm files directly in a directory, sorted by name.
+  private static ImmutableList<File> vmFiles(File location) {
+    if (!location.isDirectory()) {
+      return ImmutableList.of(location);
+    }
+    File[] files = location.listFiles((d, n) -> n.endsWith(".vm"));
+    return files == null
+        ? ImmutableList.of()
+        : ImmutableList.sortedCopyOf(
+            Comparator.comparing(File::getName), ImmutableList.copyOf(files));
+  }
+
+  private static BufferedReader openInput(String path) {
+    try {
+      return new BufferedReader(new InputStreamReader(new FileInputStream(path), Charsets.UTF_8));
+    } catch (FileNotFoundException e) {
+      throw new RuntimeException(e);
+    }
+  }
+}
@@ -0,0 +1,63 @@
+package com.computer.nand2tetris.compiler.vm;
+
+import com.google.common.base.Charsets;
+import com.google.common.base.Joiner;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Files;
+import java.io.File;
+import java.io.IOException;
+import java.util.Comparator;
+
+// Translates .vm files (the program and the OS) to one Hack assembly file with HackTranslator,
+// and prints its size in ROM on stderr. Usage:
+//
+//   VmTranslator --output=FILE.asm (file.vm | directory)...
+public final class VmTranslator {
+
+  private static final int ROM_SIZE = 32768;
+
+  private VmTranslator() {}
+
+  public static void main(String[] args) {
+    File output = null;
+    ImmutableList.Builder<File> vmFiles = ImmutableList.builder();
+    for (String arg : args) {
+      if (arg.startsWith("--output=")) {
+        output = new File(arg.substring("--output=".length()));
+      } else if (arg.startsWith("--")) {
+        throw new IllegalArgumentException("Unknown option " + arg);
+      } else {
+        vmFiles.addAll(vmFiles(new File(arg)));
+      }
+    }
+    ImmutableList<File> files = vmFiles.build();
+    Preconditions.checkArgument(output != null, "Expected --output=FILE.asm.");
+    Preconditions.checkArgument(!files.isEmpty(), "Expected at least one .vm file or directory.");
+
+    ImmutableList<String> assembly = HackTranslator.translate(VmProgram.load(files));
+    try {
+      Files.asCharSink(output, Charsets.UTF_8).write(Joiner.on('\n').join(assembly) + "\n");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    int romSize = HackTranslator.romSize(assembly);
+    System.err.printf("%s: %d instructions in ROM.%n", output, romSize);
+    if (romSize > ROM_SIZE) {
+      System.err.printf("The program doesn't fit in the %d words of ROM.%n", ROM_SIZE);
+      System.exit(1);
+    }
+  }
+
+  // The .vm files directly in a directory, sorted by name.
+  private static ImmutableList<File> vmFiles(File location) {
+    if (!location.isDirectory()) {
+      return ImmutableList.of(location);
+    }
+    File[] files = location.listFiles((d, n) -> n.endsWith(".vm"));
+    return files == null
+        ? ImmutableList.of()
+        : ImmutableList.sortedCopyOf(
+            Comparator.comparing(File::getName), ImmutableList.copyOf(files));
+  }
+}